@@ -0,0 +1,212 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A {@link java.io.Reader} that decodes bytes from an {@link java.io.InputStream} with a {@link java.nio.charset.CharsetDecoder}.
+ *
+ * <p>It works like {@link java.io.InputStreamReader}, but its decoder and buffers can be recycled for another
+ * {@link java.io.InputStream} by {@link #reset(InputStream)}. It does not latch the end of input so that it can
+ * continue to the next file of {@link org.embulk.util.file.FileInputInputStream}.
+ *
+ * <p>Its byte buffer can be a direct {@link java.nio.ByteBuffer}. Then, the {@link java.io.InputStream} must be also
+ * a {@link java.nio.channels.ReadableByteChannel}, such as {@link FileInputByteChannel}, to read bytes into the buffer.
+ *
+ * This class is not thread-safe.
+ */
+class CharsetDecodingReader extends Reader {
+    CharsetDecodingReader(final InputStream inputStream, final CharsetDecoder decoder, final int bufferSize) {
+        this(inputStream, decoder, bufferSize, false);
+    }
+
+    CharsetDecodingReader(final InputStream inputStream, final CharsetDecoder decoder, final int bufferSize, final boolean directBuffer) {
+        this.inputStream = inputStream;
+        this.decoder = decoder;
+        this.bytes = directBuffer ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        this.bytes.flip();
+        this.singleChars = new char[2];
+
+        this.chars = null;
+        this.pendingChar = NO_PENDING_CHAR;
+        this.endOfInput = false;
+    }
+
+    /**
+     * Rebinds this reader to another {@link java.io.InputStream} discarding all the bytes and chars buffered.
+     */
+    void reset(final InputStream inputStream) {
+        this.inputStream = inputStream;
+        this.decoder.reset();
+        this.bytes.clear();
+        this.bytes.flip();
+        this.pendingChar = NO_PENDING_CHAR;
+        this.endOfInput = false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.pendingChar != NO_PENDING_CHAR) {
+            final int c = this.pendingChar;
+            this.pendingChar = NO_PENDING_CHAR;
+            return c;
+        }
+        // Two chars are requested so that a surrogate pair can be decoded at once.
+        final int read = this.decode(this.singleChars, 0, 2);
+        if (read == -1) {
+            return -1;
+        }
+        if (read == 2) {
+            this.pendingChar = this.singleChars[1];
+        }
+        return this.singleChars[0];
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (this.pendingChar != NO_PENDING_CHAR) {
+            cbuf[off] = (char) this.pendingChar;
+            this.pendingChar = NO_PENDING_CHAR;
+            return 1;
+        }
+        if (len == 1) {
+            final int c = this.read();
+            if (c == -1) {
+                return -1;
+            }
+            cbuf[off] = (char) c;
+            return 1;
+        }
+        return this.decode(cbuf, off, len);
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return this.pendingChar != NO_PENDING_CHAR || this.bytes.hasRemaining() || this.inputStream.available() > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inputStream.close();
+    }
+
+    /**
+     * Decodes bytes into {@code cbuf}, reading more bytes from the stream only if no chars are decoded.
+     *
+     * @return the number of chars decoded, or {@code -1} if the current input is consumed completely
+     */
+    int decode(final char[] cbuf, final int off, final int len) throws IOException {
+        if (this.chars == null || this.chars.array() != cbuf) {
+            this.chars = CharBuffer.wrap(cbuf);
+        }
+        final CharBuffer out = this.chars;
+        out.limit(off + len).position(off);
+
+        while (true) {
+            CoderResult result = this.decoder.decode(this.bytes, out, this.endOfInput);
+            if (result.isUnderflow() && this.endOfInput) {
+                result = this.decoder.flush(out);
+                if (result.isUnderflow()) {
+                    // The current input is consumed completely. The decoder is ready for the next file.
+                    this.decoder.reset();
+                    this.endOfInput = false;
+                    break;
+                }
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (out.position() > off) {
+                // Not to block for more bytes when some chars are already available.
+                break;
+            }
+            this.fillBytes();
+        }
+
+        final int read = out.position() - off;
+        if (read == 0) {
+            return -1;
+        }
+        return read;
+    }
+
+    /**
+     * Reads more bytes from the stream into the buffer, keeping the bytes remaining.
+     *
+     * @return {@code false} if the stream reaches its end
+     */
+    boolean fillBytes() throws IOException {
+        this.bytes.compact();
+        try {
+            final int read;
+            if (this.bytes.hasArray()) {
+                read = this.inputStream.read(
+                        this.bytes.array(), this.bytes.arrayOffset() + this.bytes.position(), this.bytes.remaining());
+                if (read > 0) {
+                    this.bytes.position(this.bytes.position() + read);
+                }
+            } else if (this.inputStream instanceof ReadableByteChannel) {
+                read = ((ReadableByteChannel) this.inputStream).read(this.bytes);
+            } else {
+                throw new IllegalStateException("A direct buffer requires ReadableByteChannel: " + this.inputStream.getClass());
+            }
+            if (read < 0) {
+                this.endOfInput = true;
+                return false;
+            }
+            return true;
+        } finally {
+            this.bytes.flip();
+        }
+    }
+
+    ByteBuffer bytes() {
+        return this.bytes;
+    }
+
+    boolean isEndOfInput() {
+        return this.endOfInput;
+    }
+
+    private static final int NO_PENDING_CHAR = -1;
+
+    private InputStream inputStream;
+    private CharBuffer chars;
+    private int pendingChar;
+    private boolean endOfInput;
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final char[] singleChars;
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A buffered {@link java.io.Writer} that encodes chars into an {@link java.io.OutputStream} with a {@link java.nio.charset.CharsetEncoder}.
+ *
+ * <p>It works like {@link java.io.BufferedWriter} over {@link java.io.OutputStreamWriter}, but its encoder and buffers
+ * can be recycled for another {@link java.io.OutputStream} by {@link #reset(OutputStream)}.
+ *
+ * <p>Its byte buffer can be a direct {@link java.nio.ByteBuffer}. Then, the {@link java.io.OutputStream} must be also
+ * a {@link java.nio.channels.WritableByteChannel}, such as {@link FileOutputByteChannel}, to write bytes from the buffer.
+ *
+ * This class is not thread-safe.
+ */
+class CharsetEncodingWriter extends Writer {
+    CharsetEncodingWriter(
+            final OutputStream outputStream,
+            final CharsetEncoder encoder,
+            final int charBufferSize,
+            final int byteBufferSize) {
+        this(outputStream, encoder, charBufferSize, byteBufferSize, false);
+    }
+
+    CharsetEncodingWriter(
+            final OutputStream outputStream,
+            final CharsetEncoder encoder,
+            final int charBufferSize,
+            final int byteBufferSize,
+            final boolean directBuffer) {
+        this.outputStream = outputStream;
+        this.encoder = encoder;
+        this.chars = CharBuffer.allocate(charBufferSize);
+        this.bytes = directBuffer ? ByteBuffer.allocateDirect(byteBufferSize) : ByteBuffer.allocate(byteBufferSize);
+
+        this.closed = false;
+    }
+
+    /**
+     * Rebinds this writer to another {@link java.io.OutputStream} discarding all the chars and bytes buffered.
+     */
+    void reset(final OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.encoder.reset();
+        this.chars.clear();
+        this.bytes.clear();
+        this.closed = false;
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        this.ensureOpen();
+        if (!this.chars.hasRemaining()) {
+            this.encodeChars(false);
+        }
+        this.chars.put((char) c);
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        this.ensureOpen();
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int written = 0;
+        while (written < len) {
+            if (!this.chars.hasRemaining()) {
+                this.encodeChars(false);
+            }
+            final int chunk = Math.min(len - written, this.chars.remaining());
+            this.chars.put(cbuf, off + written, chunk);
+            written += chunk;
+        }
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        this.ensureOpen();
+        if (off < 0 || len < 0 || off + len > str.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int written = 0;
+        while (written < len) {
+            if (!this.chars.hasRemaining()) {
+                this.encodeChars(false);
+            }
+            final int chunk = Math.min(len - written, this.chars.remaining());
+            final int position = this.chars.position();
+            str.getChars(off + written, off + written + chunk, this.chars.array(), this.chars.arrayOffset() + position);
+            this.chars.position(position + chunk);
+            written += chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.ensureOpen();
+        this.encodeChars(false);
+        this.writeBytes();
+        this.outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.encodeChars(true);
+            this.flushEncoder();
+            this.writeBytes();
+            this.outputStream.close();
+        } finally {
+            this.closed = true;
+        }
+    }
+
+    private void encodeChars(final boolean endOfInput) throws IOException {
+        this.chars.flip();
+        try {
+            while (true) {
+                final CoderResult result = this.encoder.encode(this.chars, this.bytes, endOfInput);
+                if (result.isUnderflow()) {
+                    // A high surrogate at the end, if any, is kept in the buffer until its low surrogate comes.
+                    break;
+                }
+                if (result.isOverflow()) {
+                    this.writeBytes();
+                    continue;
+                }
+                result.throwException();
+            }
+        } finally {
+            this.chars.compact();
+        }
+    }
+
+    private void flushEncoder() throws IOException {
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            this.writeBytes();
+        }
+    }
+
+    private void writeBytes() throws IOException {
+        if (this.bytes.position() == 0) {
+            return;
+        }
+        if (this.bytes.hasArray()) {
+            this.outputStream.write(this.bytes.array(), this.bytes.arrayOffset(), this.bytes.position());
+        } else if (this.outputStream instanceof WritableByteChannel) {
+            this.bytes.flip();
+            while (this.bytes.hasRemaining()) {
+                ((WritableByteChannel) this.outputStream).write(this.bytes);
+            }
+        } else {
+            throw new IllegalStateException("A direct buffer requires WritableByteChannel: " + this.outputStream.getClass());
+        }
+        this.bytes.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private OutputStream outputStream;
+    private boolean closed;
+
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+}
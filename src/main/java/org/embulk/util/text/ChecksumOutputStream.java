@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Checksum;
+
+/**
+ * An {@link java.io.OutputStream} that counts and checksums bytes passing through to the underlying {@link java.io.OutputStream}.
+ *
+ * <p>Unlike {@link java.io.FilterOutputStream}, it passes through arrays of bytes as they are, not byte by byte.
+ * It also passes through {@link java.nio.ByteBuffer}s if the underlying {@link java.io.OutputStream} is
+ * a {@link java.nio.channels.WritableByteChannel}.
+ *
+ * This class is not thread-safe.
+ */
+class ChecksumOutputStream extends OutputStream implements WritableByteChannel {
+    ChecksumOutputStream(final OutputStream outputStream, final Checksum checksum) {
+        this.outputStream = outputStream;
+        this.checksum = checksum;
+        this.byteCount = 0L;
+        this.scratch = null;
+    }
+
+    /**
+     * Rebinds this stream to another {@link java.io.OutputStream}, and resets the counts.
+     */
+    void reset(final OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.resetCounts();
+    }
+
+    void resetCounts() {
+        this.checksum.reset();
+        this.byteCount = 0L;
+    }
+
+    long getByteCount() {
+        return this.byteCount;
+    }
+
+    long getChecksumValue() {
+        return this.checksum.getValue();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.outputStream.write(b);
+        this.checksum.update(b);
+        this.byteCount++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        this.outputStream.write(b, off, len);
+        this.checksum.update(b, off, len);
+        this.byteCount += len;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        if (!(this.outputStream instanceof WritableByteChannel)) {
+            throw new IllegalStateException("ByteBuffer requires WritableByteChannel: " + this.outputStream.getClass());
+        }
+        final int position = src.position();
+        final int written = ((WritableByteChannel) this.outputStream).write(src);
+        this.updateChecksum(src, position, written);
+        this.byteCount += written;
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !(this.outputStream instanceof WritableByteChannel) || ((WritableByteChannel) this.outputStream).isOpen();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.outputStream.close();
+    }
+
+    /**
+     * Updates the checksum with bytes of {@code src} from {@code position}.
+     *
+     * <p>{@link java.util.zip.Checksum} accepts only {@code byte[]} on Java 8. Bytes in a direct buffer are copied
+     * through a small scratch array.
+     */
+    private void updateChecksum(final ByteBuffer src, final int position, final int length) {
+        if (src.hasArray()) {
+            this.checksum.update(src.array(), src.arrayOffset() + position, length);
+            return;
+        }
+        if (this.scratch == null) {
+            this.scratch = new byte[SCRATCH_SIZE];
+        }
+        final ByteBuffer view = src.duplicate();
+        view.limit(position + length).position(position);
+        while (view.hasRemaining()) {
+            final int chunk = Math.min(view.remaining(), this.scratch.length);
+            view.get(this.scratch, 0, chunk);
+            this.checksum.update(this.scratch, 0, chunk);
+        }
+    }
+
+    private static final int SCRATCH_SIZE = 1024;
+
+    private OutputStream outputStream;
+    private long byteCount;
+    private byte[] scratch;
+
+    private final Checksum checksum;
+}
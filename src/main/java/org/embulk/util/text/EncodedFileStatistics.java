@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.util.Locale;
+
+/**
+ * Statistics of a file encoded by {@link LineEncoder}: the number of lines, the number of bytes, and the checksum of the bytes.
+ *
+ * <p>It is available from {@link LineEncoder#getFileStatistics()} after the file is completed by
+ * {@link LineEncoder#nextFile()}, {@link LineEncoder#finish()} or {@link LineEncoder#close()}.
+ */
+public final class EncodedFileStatistics {
+    private EncodedFileStatistics(final int fileIndex, final long lineCount, final long byteCount, final long checksum) {
+        this.fileIndex = fileIndex;
+        this.lineCount = lineCount;
+        this.byteCount = byteCount;
+        this.checksum = checksum;
+    }
+
+    static EncodedFileStatistics of(final int fileIndex, final long lineCount, final long byteCount, final long checksum) {
+        return new EncodedFileStatistics(fileIndex, lineCount, byteCount, checksum);
+    }
+
+    /**
+     * Returns the 0-origin index of the file in the {@link org.embulk.spi.FileOutput}.
+     */
+    public int getFileIndex() {
+        return this.fileIndex;
+    }
+
+    /**
+     * Returns the number of lines in the file. Text after the last newline is counted as a line.
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Returns the number of encoded bytes in the file.
+     */
+    public long getByteCount() {
+        return this.byteCount;
+    }
+
+    /**
+     * Returns the value of the {@link java.util.zip.Checksum} over the encoded bytes in the file.
+     */
+    public long getChecksum() {
+        return this.checksum;
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (!(otherObject instanceof EncodedFileStatistics)) {
+            return false;
+        }
+        final EncodedFileStatistics other = (EncodedFileStatistics) otherObject;
+        return this.fileIndex == other.fileIndex
+                && this.lineCount == other.lineCount
+                && this.byteCount == other.byteCount
+                && this.checksum == other.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.checksum) * 31 + Integer.hashCode(this.fileIndex);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                             "EncodedFileStatistics{fileIndex=%d, lineCount=%d, byteCount=%d, checksum=%x}",
+                             this.fileIndex, this.lineCount, this.byteCount, this.checksum);
+    }
+
+    private final int fileIndex;
+    private final long lineCount;
+    private final long byteCount;
+    private final long checksum;
+}
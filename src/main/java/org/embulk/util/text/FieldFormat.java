@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Rules to write delimiter-separated fields by {@link LineEncoder#addField(FieldFormat, String)}.
+ *
+ * <p>A field is quoted by the quote char according to the {@link QuotePolicy}. In a quoted field, the quote char, and
+ * the escape char if it is not the quote char, are escaped by the escape char. For example, a quote char is doubled
+ * if the escape char is the same as the quote char as RFC 4180. In a field not quoted by {@link QuotePolicy#NONE},
+ * the delimiter, the escape char, CR and LF are escaped by the escape char instead.
+ *
+ * <p>{@code null} is written as the null string. A non-null value equal to the null string, such as an empty value
+ * with the default empty null string, is quoted by {@link QuotePolicy#MINIMAL} so that it is distinguished from {@code null}.
+ *
+ * <pre><code>FieldFormat format = FieldFormat.of(',', '"', '"', FieldFormat.QuotePolicy.MINIMAL);</code></pre>
+ */
+public final class FieldFormat {
+    public enum QuotePolicy {
+        /**
+         * Quotes all the fields.
+         */
+        ALL,
+
+        /**
+         * Quotes only fields which contain the delimiter, the quote char, the escape char, CR or LF, and fields equal
+         * to the null string.
+         */
+        MINIMAL,
+
+        /**
+         * Never quotes. The delimiter, the escape char, CR and LF in fields are escaped by the escape char.
+         *
+         * <p>An escaped CR or LF is still written as it is after the escape char. It is read back only by a reader
+         * which recognizes the escape char before a line delimiter.
+         */
+        NONE,
+        ;
+    }
+
+    private FieldFormat(
+            final char delimiter,
+            final char quote,
+            final char escape,
+            final QuotePolicy quotePolicy,
+            final String nullString) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.escape = escape;
+        this.quotePolicy = quotePolicy;
+        this.nullString = nullString;
+    }
+
+    public static FieldFormat of(final char delimiter, final char quote, final char escape, final QuotePolicy quotePolicy) {
+        return of(delimiter, quote, escape, quotePolicy, "");
+    }
+
+    /**
+     * Creates a {@code FieldFormat}.
+     *
+     * @param delimiter  the char to delimit fields, which cannot be CR, LF nor the quote char
+     * @param quote  the char to quote fields
+     * @param escape  the char to escape, which can be the same as the quote char
+     * @param quotePolicy  the policy to quote fields
+     * @param nullString  the string written as it is for {@code null}
+     * @return a {@code FieldFormat}
+     */
+    public static FieldFormat of(
+            final char delimiter,
+            final char quote,
+            final char escape,
+            final QuotePolicy quotePolicy,
+            final String nullString) {
+        if (delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("CR and LF cannot be a field delimiter.");
+        }
+        if (delimiter == quote) {
+            throw new IllegalArgumentException("The field delimiter cannot be the same as the quote char.");
+        }
+        return new FieldFormat(
+                delimiter,
+                quote,
+                escape,
+                Objects.requireNonNull(quotePolicy, "quotePolicy"),
+                Objects.requireNonNull(nullString, "nullString"));
+    }
+
+    public char getDelimiter() {
+        return this.delimiter;
+    }
+
+    public char getQuote() {
+        return this.quote;
+    }
+
+    public char getEscape() {
+        return this.escape;
+    }
+
+    public QuotePolicy getQuotePolicy() {
+        return this.quotePolicy;
+    }
+
+    public String getNullString() {
+        return this.nullString;
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (!(otherObject instanceof FieldFormat)) {
+            return false;
+        }
+        final FieldFormat other = (FieldFormat) otherObject;
+        return this.delimiter == other.delimiter
+                && this.quote == other.quote
+                && this.escape == other.escape
+                && this.quotePolicy == other.quotePolicy
+                && this.nullString.equals(other.nullString);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.delimiter, this.quote, this.escape, this.quotePolicy, this.nullString);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                             "FieldFormat{delimiter=%s,quote=%s,escape=%s,quotePolicy=%s,nullString=%s}",
+                             this.delimiter,
+                             this.quote,
+                             this.escape,
+                             this.quotePolicy,
+                             this.nullString);
+    }
+
+    /**
+     * Writes a field into the {@link java.io.Writer}, escaping and quoting on the fly.
+     *
+     * <p>Runs of chars which need no escape are written at once without an intermediate {@link String}.
+     */
+    void write(final Writer writer, final String value) throws IOException {
+        if (value == null) {
+            writer.write(this.nullString);
+            return;
+        }
+        switch (this.quotePolicy) {
+            case ALL:
+                this.writeQuoted(writer, value);
+                break;
+            case MINIMAL:
+                if (this.requiresQuote(value)) {
+                    this.writeQuoted(writer, value);
+                } else {
+                    writer.write(value);
+                }
+                break;
+            case NONE:
+                this.writeEscaped(writer, value, this.delimiter, true);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported quote policy " + this.quotePolicy);
+        }
+    }
+
+    private boolean requiresQuote(final String value) {
+        if (value.equals(this.nullString)) {
+            return true;
+        }
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == this.delimiter || c == this.quote || c == this.escape || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeQuoted(final Writer writer, final String value) throws IOException {
+        writer.write(this.quote);
+        this.writeEscaped(writer, value, this.quote, false);
+        writer.write(this.quote);
+    }
+
+    /**
+     * Writes the value escaping {@code special} and the escape char, and also CR and LF if {@code escapeNewlines}.
+     */
+    private void writeEscaped(final Writer writer, final String value, final char special, final boolean escapeNewlines) throws IOException {
+        final int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == special || c == this.escape || (escapeNewlines && (c == '\r' || c == '\n'))) {
+                writer.write(value, start, i - start);
+                writer.write(this.escape);
+                start = i;  // The char itself is written with the next run.
+            }
+        }
+        writer.write(value, start, length - start);
+    }
+
+    private final char delimiter;
+    private final char quote;
+    private final char escape;
+    private final QuotePolicy quotePolicy;
+    private final String nullString;
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.FileInput;
+
+/**
+ * An {@link java.io.InputStream} over {@link org.embulk.spi.FileInput} which can also read into a {@link java.nio.ByteBuffer}.
+ *
+ * <p>It works like {@link org.embulk.util.file.FileInputInputStream}, but {@link #read(ByteBuffer)} copies bytes from
+ * {@link org.embulk.spi.Buffer} into a {@link java.nio.ByteBuffer}, including a direct one, without an intermediate
+ * {@code byte[]}. Like {@link org.embulk.util.file.FileInputInputStream}, it reaches its end at the end of each file,
+ * and continues to the next file by {@link #nextFile()}.
+ *
+ * This class is not thread-safe.
+ */
+class FileInputByteChannel extends InputStream implements ReadableByteChannel {
+    FileInputByteChannel(final FileInput in) {
+        this.in = in;
+        this.current = null;
+        this.position = 0;
+        this.open = true;
+    }
+
+    boolean nextFile() {
+        this.releaseCurrent();
+        return this.in.nextFile();
+    }
+
+    @Override
+    public int read() {
+        if (!this.ensureCurrent()) {
+            return -1;
+        }
+        final byte[] single = new byte[1];
+        this.current.getBytes(this.position, single, 0, 1);
+        this.position++;
+        return single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.ensureCurrent()) {
+            return -1;
+        }
+        final int read = Math.min(len, this.current.limit() - this.position);
+        this.current.getBytes(this.position, b, off, read);
+        this.position += read;
+        return read;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (!this.ensureCurrent()) {
+            return -1;
+        }
+        final int read = Math.min(dst.remaining(), this.current.limit() - this.position);
+        final int dstPosition = dst.position();
+        final int dstLimit = dst.limit();
+        dst.limit(dstPosition + read);
+        try {
+            this.current.getBytes(this.position, dst);
+        } finally {
+            dst.limit(dstLimit);
+        }
+        dst.position(dstPosition + read);
+        this.position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        if (this.current == null) {
+            return 0;
+        }
+        return this.current.limit() - this.position;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.releaseCurrent();
+        } finally {
+            this.open = false;
+            this.in.close();
+        }
+    }
+
+    /**
+     * Polls {@link org.embulk.spi.Buffer}s until one has bytes to read.
+     *
+     * @return {@code false} if the current file reaches its end
+     */
+    private boolean ensureCurrent() {
+        while (this.current == null || this.position >= this.current.limit()) {
+            this.releaseCurrent();
+            final Buffer polled = this.in.poll();
+            if (polled == null) {
+                return false;
+            }
+            this.current = polled;
+        }
+        return true;
+    }
+
+    private void releaseCurrent() {
+        if (this.current != null) {
+            this.current.release();
+            this.current = null;
+        }
+        this.position = 0;
+    }
+
+    private Buffer current;
+    private int position;
+    private boolean open;
+
+    private final FileInput in;
+}
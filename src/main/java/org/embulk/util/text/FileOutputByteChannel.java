@@ -0,0 +1,139 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileOutput;
+
+/**
+ * An {@link java.io.OutputStream} into {@link org.embulk.spi.FileOutput} which can also write from a {@link java.nio.ByteBuffer}.
+ *
+ * <p>It works like {@link org.embulk.util.file.FileOutputOutputStream} with {@code CloseMode.FLUSH_FINISH}, but
+ * {@link #write(ByteBuffer)} copies bytes from a {@link java.nio.ByteBuffer}, including a direct one, into
+ * {@link org.embulk.spi.Buffer} without an intermediate {@code byte[]}.
+ *
+ * This class is not thread-safe.
+ */
+class FileOutputByteChannel extends OutputStream implements WritableByteChannel {
+    FileOutputByteChannel(final FileOutput out, final BufferAllocator bufferAllocator) {
+        this.out = out;
+        this.bufferAllocator = bufferAllocator;
+        this.current = null;
+        this.position = 0;
+        this.open = true;
+    }
+
+    void nextFile() {
+        this.out.nextFile();
+    }
+
+    @Override
+    public void write(final int b) {
+        this.write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+        int written = 0;
+        while (written < len) {
+            this.ensureCurrent();
+            final int chunk = Math.min(len - written, this.current.capacity() - this.position);
+            this.current.setBytes(this.position, b, off + written, chunk);
+            this.position += chunk;
+            written += chunk;
+            this.addIfFull();
+        }
+    }
+
+    @Override
+    public int write(final ByteBuffer src) {
+        final int len = src.remaining();
+        final int srcLimit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                this.ensureCurrent();
+                final int chunk = Math.min(src.remaining(), this.current.capacity() - this.position);
+                final int srcPosition = src.position();
+                src.limit(srcPosition + chunk);
+                this.current.setBytes(this.position, src);
+                src.limit(srcLimit);
+                src.position(srcPosition + chunk);
+                this.position += chunk;
+                this.addIfFull();
+            }
+        } finally {
+            src.limit(srcLimit);
+        }
+        return len;
+    }
+
+    /**
+     * Adds the bytes written so far into {@link org.embulk.spi.FileOutput} as a {@link org.embulk.spi.Buffer}.
+     */
+    @Override
+    public void flush() {
+        if (this.current != null && this.position > 0) {
+            this.current.limit(this.position);
+            this.out.add(this.current);
+            this.current = null;
+            this.position = 0;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Flushes, and finishes {@link org.embulk.spi.FileOutput}. It does not close {@link org.embulk.spi.FileOutput}.
+     */
+    @Override
+    public void close() {
+        this.flush();
+        if (this.current != null) {
+            this.current.release();
+            this.current = null;
+        }
+        this.open = false;
+        this.out.finish();
+    }
+
+    private void ensureCurrent() {
+        if (this.current == null) {
+            this.current = this.bufferAllocator.allocate();
+            this.position = 0;
+        }
+    }
+
+    private void addIfFull() {
+        if (this.position >= this.current.capacity()) {
+            this.flush();
+        }
+    }
+
+    private Buffer current;
+    private int position;
+    private boolean open;
+
+    private final FileOutput out;
+    private final BufferAllocator bufferAllocator;
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.embulk.spi.FileInput;
+import org.embulk.util.file.FileInputInputStream;
+
+/**
+ * Decodes {@link org.embulk.spi.FileInput} into iteration of fixed-length records.
+ *
+ * <p>It slices the bytes of each file into records of the same number of bytes, and decodes each record with the charset.
+ * If a trailing delimiter is specified, the delimiter just after a record is skipped if it exists. The last record
+ * of a file can be shorter than the record length.
+ *
+ * <pre><code>FixedLengthRecordDecoder decoder = FixedLengthRecordDecoder.of(fileInput, charset, 80, LineDelimiter.CRLF);</code></pre>
+ */
+public class FixedLengthRecordDecoder implements AutoCloseable, Iterable<String> {
+    private FixedLengthRecordDecoder(
+            final FileInputInputStream inputStream,
+            final Charset charset,
+            final CharsetDecoder decoder,
+            final int recordLength,
+            final byte[] trailingDelimiter) {
+        this.inputStream = inputStream;
+        this.charset = charset;
+        this.decoder = decoder;
+        this.recordLength = recordLength;
+        this.trailingDelimiter = trailingDelimiter;
+
+        final byte[] buffer = new byte[Math.max(MIN_BUFFER_SIZE, recordLength + trailingDelimiter.length)];
+        this.bytes = ByteBuffer.wrap(buffer);
+        this.bytes.flip();
+        this.chars = CharBuffer.allocate((int) Math.ceil(recordLength * (double) decoder.maxCharsPerByte()));
+        this.endOfFile = false;
+
+        this.nextRecord = null;
+    }
+
+    public static FixedLengthRecordDecoder of(final FileInput in, final Charset charset, final int recordLength) {
+        return of(in, charset, recordLength, null);
+    }
+
+    public static FixedLengthRecordDecoder of(
+            final FileInput in,
+            final Charset charset,
+            final int recordLength,
+            final LineDelimiter trailingDelimiter) {
+        final CharsetDecoder decoder = charset
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
+
+        return of(in, decoder, recordLength, trailingDelimiter);
+    }
+
+    /**
+     * Creates a {@code FixedLengthRecordDecoder} with the {@link java.nio.charset.CharsetDecoder} configured as given.
+     *
+     * <p>If the decoder reports malformed input or unmappable characters, {@link #poll()} throws
+     * {@link java.io.UncheckedIOException} caused by the {@link java.nio.charset.CharacterCodingException}.
+     */
+    static FixedLengthRecordDecoder of(
+            final FileInput in,
+            final CharsetDecoder decoder,
+            final int recordLength,
+            final LineDelimiter trailingDelimiter) {
+        if (recordLength <= 0) {
+            throw new IllegalArgumentException("recordLength must be positive: " + recordLength);
+        }
+        return new FixedLengthRecordDecoder(
+                new FileInputInputStream(in),
+                decoder.charset(),
+                decoder,
+                recordLength,
+                encodeDelimiter(trailingDelimiter, decoder.charset()));
+    }
+
+    public boolean nextFile() {
+        final boolean has = this.inputStream.nextFile();
+        this.bytes.clear();
+        this.bytes.flip();
+        this.endOfFile = false;
+        if (has && this.charset.equals(StandardCharsets.UTF_8)) {
+            this.skipBom();
+        }
+        return has;
+    }
+
+    public String poll() {
+        try {
+            this.ensureBuffered(this.recordLength);
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+        if (!this.bytes.hasRemaining()) {
+            return null;
+        }
+
+        final int length = Math.min(this.recordLength, this.bytes.remaining());
+        final int limit = this.bytes.limit();
+        this.bytes.limit(this.bytes.position() + length);
+        final String record = this.decode();
+        this.bytes.limit(limit);
+
+        this.skipTrailingDelimiter();
+        return record;
+    }
+
+    @Override
+    public void close() {
+        final InputStream stream = this.inputStream;
+        try {
+            stream.close();
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Ite(this);
+    }
+
+    private static class Ite implements Iterator<String> {
+        public Ite(final FixedLengthRecordDecoder self) {
+            this.self = self;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.self.nextRecord != null) {
+                return true;
+            } else {
+                this.self.nextRecord = this.self.poll();
+                return this.self.nextRecord != null;
+            }
+        }
+
+        @Override
+        public String next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String r = this.self.nextRecord;
+            this.self.nextRecord = null;
+            return r;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private FixedLengthRecordDecoder self;
+    }
+
+    /**
+     * Encodes the delimiter without a byte order mark which some charsets, such as UTF-16, put at the beginning.
+     */
+    private static byte[] encodeDelimiter(final LineDelimiter delimiter, final Charset charset) {
+        if (delimiter == null) {
+            return new byte[0];
+        }
+        final String string;
+        switch (delimiter) {
+            case CRLF:
+                string = "\r\n";
+                break;
+            case LF:
+                string = "\n";
+                break;
+            case CR:
+                string = "\r";
+                break;
+            default:
+                throw new IllegalStateException("Unsupported line delimiter " + delimiter);
+        }
+        // The bytes of the delimiter itself follow the bytes of the first one, including a byte order mark if any.
+        final byte[] once = string.getBytes(charset);
+        final byte[] twice = (string + string).getBytes(charset);
+        final byte[] encoded = Arrays.copyOfRange(twice, once.length, twice.length);
+        if (!string.equals(new String(encoded, charset))) {
+            throw new IllegalArgumentException("The trailing delimiter cannot be encoded by itself in " + charset);
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes the bytes up to the limit into a record.
+     *
+     * <p>The chars buffer is sized with {@link java.nio.charset.CharsetDecoder#maxCharsPerByte()}, but it is grown on
+     * overflow in case the decoder produces more, such as on {@link java.nio.charset.CharsetDecoder#flush(CharBuffer)}.
+     */
+    private String decode() {
+        this.decoder.reset();
+        this.chars.clear();
+        CoderResult result;
+        do {
+            result = this.decoder.decode(this.bytes, this.chars, true);
+        } while (this.checkResult(result));
+        do {
+            result = this.decoder.flush(this.chars);
+        } while (this.checkResult(result));
+        return new String(this.chars.array(), this.chars.arrayOffset(), this.chars.position());
+    }
+
+    /**
+     * Throws on a coding error, and grows the chars buffer on overflow.
+     *
+     * @return {@code true} if the decoding should be continued with the grown buffer
+     */
+    private boolean checkResult(final CoderResult result) {
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (final CharacterCodingException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        if (result.isOverflow()) {
+            final CharBuffer grown = CharBuffer.allocate(Math.max(this.chars.capacity() * 2, 1));
+            this.chars.flip();
+            grown.put(this.chars);
+            this.chars = grown;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipTrailingDelimiter() {
+        final int length = this.trailingDelimiter.length;
+        if (length == 0) {
+            return;
+        }
+        try {
+            this.ensureBuffered(length);
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+        if (this.bytes.remaining() < length) {
+            return;
+        }
+        final int position = this.bytes.position();
+        for (int i = 0; i < length; i++) {
+            if (this.bytes.get(position + i) != this.trailingDelimiter[i]) {
+                return;
+            }
+        }
+        this.bytes.position(position + length);
+    }
+
+    private void skipBom() {
+        try {
+            this.ensureBuffered(BOM.length);
+        } catch (final IOException ex) {
+            // Passing through intentionally.
+            return;
+        }
+        if (this.bytes.remaining() < BOM.length) {
+            return;
+        }
+        final int position = this.bytes.position();
+        for (int i = 0; i < BOM.length; i++) {
+            if (this.bytes.get(position + i) != BOM[i]) {
+                return;
+            }
+        }
+        // skip BOM bytes
+        this.bytes.position(position + BOM.length);
+    }
+
+    /**
+     * Reads bytes from the current file until the buffer has {@code length} bytes, or the file ends.
+     */
+    private void ensureBuffered(final int length) throws IOException {
+        if (this.bytes.remaining() >= length || this.endOfFile) {
+            return;
+        }
+        this.bytes.compact();
+        try {
+            while (this.bytes.position() < length) {
+                final int read = this.inputStream.read(
+                        this.bytes.array(), this.bytes.arrayOffset() + this.bytes.position(), this.bytes.remaining());
+                if (read < 0) {
+                    this.endOfFile = true;
+                    break;
+                }
+                this.bytes.position(this.bytes.position() + read);
+            }
+        } finally {
+            this.bytes.flip();
+        }
+    }
+
+    private static final int MIN_BUFFER_SIZE = 8192;
+
+    private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private String nextRecord;
+    private boolean endOfFile;
+    private CharBuffer chars;
+
+    private final Charset charset;
+    private final FileInputInputStream inputStream;
+    private final CharsetDecoder decoder;
+    private final int recordLength;
+    private final byte[] trailingDelimiter;
+    private final ByteBuffer bytes;
+}
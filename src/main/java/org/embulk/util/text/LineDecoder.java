@@ -16,18 +16,21 @@
 
 package org.embulk.util.text;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.embulk.spi.FileInput;
-import org.embulk.util.file.FileInputInputStream;
 
 /**
  * Decodes {@link org.embulk.spi.FileInput} into iteration of lines.
@@ -36,32 +39,301 @@ import org.embulk.util.file.FileInputInputStream;
  * interface like {@code DecoderTask}. Use {@link #of(FileInput, Charset, LineDelimiter)} instead.
  *
  * <pre><code>LineDecoder decoder = LineDecoder.of(fileInput, charset, null);</code></pre>
+ *
+ * <p>A {@code LineDecoder} can be reused for another {@link org.embulk.spi.FileInput} by {@link #reset(FileInput)}
+ * so that its {@link java.nio.charset.CharsetDecoder} and buffers are recycled. See also {@link LineDecoderPool}.
+ *
+ * <p>Options such as a custom delimiter, a field separator, a cache of lines and a direct buffer can be combined by
+ * {@link #builder(Charset)}.
  */
 public class LineDecoder implements AutoCloseable, Iterable<String> {
     // TODO optimize
 
     private LineDecoder(
-            final FileInputInputStream inputStream,
+            final FileInputByteChannel inputStream,
             final Charset charset,
-            final BufferedReader reader) {
+            final CharsetDecodingReader decodingReader,
+            final LineReader reader,
+            final int fieldSeparator,
+            final int stringCacheCapacity,
+            final boolean directBuffer) {
         this.inputStream = inputStream;
         this.charset = charset;
+        this.decodingReader = decodingReader;
         this.reader = reader;
+        this.fieldSeparator = fieldSeparator;
+        this.stringCacheCapacity = stringCacheCapacity;
+        this.directBuffer = directBuffer;
 
         this.nextLine = null;
     }
 
     public static LineDecoder of(final FileInput in, final Charset charset, final LineDelimiter lineDelimiterRecognized) {
-        final FileInputInputStream inputStream = new FileInputInputStream(in);
-        final CharsetDecoder decoder = charset
-                .newDecoder()
-                .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
-                .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
+        return of(in, charset, lineDelimiterRecognized, false);
+    }
+
+    /**
+     * Creates a {@code LineDecoder} which buffers bytes in a direct {@link java.nio.ByteBuffer} if {@code directBuffer} is {@code true}.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @param charset  the charset of the input
+     * @param lineDelimiterRecognized  the line delimiter, or {@code null} to recognize any of CR, LF and CRLF
+     * @param directBuffer  {@code true} to buffer bytes in a direct {@link java.nio.ByteBuffer}
+     * @return a {@code LineDecoder} to decode {@code in}
+     * @see Builder#directBuffer(boolean)
+     */
+    public static LineDecoder of(
+            final FileInput in,
+            final Charset charset,
+            final LineDelimiter lineDelimiterRecognized,
+            final boolean directBuffer) {
+        return builder(charset).lineDelimiter(lineDelimiterRecognized).directBuffer(directBuffer).build(in);
+    }
 
-        return new LineDecoder(
-                inputStream,
-                charset,
-                LineReader.of(new InputStreamReader(inputStream, decoder), lineDelimiterRecognized, 256));
+    /**
+     * Creates a {@code LineDecoder} which recognizes a custom string as the line delimiter.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @param charset  the charset of the input
+     * @param customDelimiter  the non-empty string to delimit lines
+     * @return a {@code LineDecoder} to decode {@code in}
+     * @see Builder#customDelimiter(String)
+     */
+    public static LineDecoder ofCustomDelimiter(final FileInput in, final Charset charset, final String customDelimiter) {
+        return ofCustomDelimiter(in, charset, customDelimiter, false);
+    }
+
+    /**
+     * Creates a {@code LineDecoder} which recognizes a custom string as the line delimiter, and buffers bytes in
+     * a direct {@link java.nio.ByteBuffer} if {@code directBuffer} is {@code true}.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @param charset  the charset of the input
+     * @param customDelimiter  the non-empty string to delimit lines
+     * @param directBuffer  {@code true} to buffer bytes in a direct {@link java.nio.ByteBuffer}
+     * @return a {@code LineDecoder} to decode {@code in}
+     * @see Builder#customDelimiter(String)
+     * @see Builder#directBuffer(boolean)
+     */
+    public static LineDecoder ofCustomDelimiter(
+            final FileInput in,
+            final Charset charset,
+            final String customDelimiter,
+            final boolean directBuffer) {
+        return builder(charset).customDelimiter(customDelimiter).directBuffer(directBuffer).build(in);
+    }
+
+    /**
+     * Returns a {@link Builder} of {@code LineDecoder}s to combine options.
+     *
+     * <pre><code>LineDecoder decoder = LineDecoder.builder(charset)
+     *         .lineDelimiter(LineDelimiter.LF)
+     *         .fieldSeparator('\t')
+     *         .stringCache(1024)
+     *         .build(fileInput);</code></pre>
+     *
+     * @param charset  the charset of the input
+     * @return a {@link Builder} with the default options
+     */
+    public static Builder builder(final Charset charset) {
+        return new Builder(Objects.requireNonNull(charset, "charset"));
+    }
+
+    /**
+     * Builds {@link LineDecoder}s with options which can be combined with each other.
+     *
+     * <p>A {@code Builder} can build {@link LineDecoder}s for multiple {@link org.embulk.spi.FileInput}s. It can also be
+     * passed to {@link LineDecoderPool#of(LineDecoder.Builder)} to pool {@link LineDecoder}s of the options.
+     *
+     * This class is not thread-safe.
+     */
+    public static final class Builder {
+        private Builder(final Charset charset) {
+            this.charset = charset;
+            this.lineDelimiterRecognized = null;
+            this.customDelimiter = null;
+            this.fieldSeparator = NO_FIELD_SEPARATOR;
+            this.stringCacheCapacity = NO_STRING_CACHE;
+            this.directBuffer = false;
+        }
+
+        private Builder(final Builder other) {
+            this.charset = other.charset;
+            this.lineDelimiterRecognized = other.lineDelimiterRecognized;
+            this.customDelimiter = other.customDelimiter;
+            this.fieldSeparator = other.fieldSeparator;
+            this.stringCacheCapacity = other.stringCacheCapacity;
+            this.directBuffer = other.directBuffer;
+        }
+
+        /**
+         * Sets the line delimiter. It cannot be set with {@link #customDelimiter(String)}.
+         *
+         * @param lineDelimiterRecognized  the line delimiter, or {@code null} to recognize any of CR, LF and CRLF, which is the default
+         * @return this {@code Builder}
+         */
+        public Builder lineDelimiter(final LineDelimiter lineDelimiterRecognized) {
+            this.lineDelimiterRecognized = lineDelimiterRecognized;
+            return this;
+        }
+
+        /**
+         * Sets a custom string as the line delimiter. It cannot be set with {@link #lineDelimiter(LineDelimiter)}.
+         *
+         * <p>The delimiter can be any non-empty string, such as U+001E (record separator), U+0000 (null),
+         * {@code "|~|"} and U+2028 (line separator). It is searched in decoded chars, not in raw bytes, so that it
+         * never matches a part of a multi-byte char. An empty line is returned at the end of a file just after a delimiter
+         * in the same way as {@link LineDelimiter}s.
+         *
+         * @param customDelimiter  the non-empty string to delimit lines
+         * @return this {@code Builder}
+         */
+        public Builder customDelimiter(final String customDelimiter) {
+            if (customDelimiter == null || customDelimiter.isEmpty()) {
+                throw new IllegalArgumentException("Custom line delimiter must not be empty.");
+            }
+            this.customDelimiter = customDelimiter;
+            return this;
+        }
+
+        /**
+         * Sets a field separator char to split each line into fields.
+         *
+         * <p>Positions of the field separator are recorded while searching for the line delimiter in the same pass. After
+         * {@link LineDecoder#poll()}, fields of the line are available from {@link LineDecoder#getFieldCount()} and
+         * {@link LineDecoder#getFieldEnds()} without scanning the line again. Quotes are not recognized. It is for simple
+         * formats like TSV.
+         *
+         * <pre><code>LineDecoder decoder = LineDecoder.builder(charset).fieldSeparator('\t').build(fileInput);
+         * decoder.nextFile();
+         * for (String line = decoder.poll(); line != null; line = decoder.poll()) {
+         *     final int[] ends = decoder.getFieldEnds();
+         *     int start = 0;
+         *     for (int i = 0; i &lt; decoder.getFieldCount(); i++) {
+         *         final String field = line.substring(start, ends[i]);
+         *         start = ends[i] + 1;
+         *     }
+         * }</code></pre>
+         *
+         * @param fieldSeparator  the char to separate fields, which cannot be CR nor LF
+         * @return this {@code Builder}
+         */
+        public Builder fieldSeparator(final char fieldSeparator) {
+            if (fieldSeparator == '\r' || fieldSeparator == '\n') {
+                throw new IllegalArgumentException("CR and LF cannot be a field separator.");
+            }
+            this.fieldSeparator = fieldSeparator;
+            return this;
+        }
+
+        /**
+         * Sets a cache to return a shared {@link String} instance for lines of the same chars.
+         *
+         * <p>Recent lines are kept in a bounded cache of {@code capacity} entries, evicted by the CLOCK algorithm.
+         * If a line has the same chars as a cached one, the cached {@link String} is returned instead of a new one. It reduces
+         * allocations and the heap retained downstream when lines are repetitive, such as access logs. Lines longer than
+         * 1024 chars are not cached.
+         *
+         * @param capacity  the number of lines to cache
+         * @return this {@code Builder}
+         */
+        public Builder stringCache(final int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            this.stringCacheCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets whether to buffer bytes in a direct {@link java.nio.ByteBuffer}. It is {@code false} by default.
+         *
+         * <p>A direct buffer keeps bytes off the heap, and it is filled from {@link org.embulk.spi.Buffer}s without
+         * an intermediate {@code byte[]}. Note that the JDK's {@link java.nio.charset.CharsetDecoder}s decode a direct buffer
+         * slower than a heap buffer in general, and UTF-8 is not decoded in its dedicated path from a direct buffer.
+         *
+         * @param directBuffer  {@code true} to buffer bytes in a direct {@link java.nio.ByteBuffer}
+         * @return this {@code Builder}
+         */
+        public Builder directBuffer(final boolean directBuffer) {
+            this.directBuffer = directBuffer;
+            return this;
+        }
+
+        /**
+         * Builds a {@link LineDecoder} with the options.
+         *
+         * @param in  the {@link org.embulk.spi.FileInput} to decode
+         * @return a {@link LineDecoder} to decode {@code in}
+         */
+        public LineDecoder build(final FileInput in) {
+            if (this.lineDelimiterRecognized != null && this.customDelimiter != null) {
+                throw new IllegalStateException("A line delimiter and a custom delimiter cannot be set at the same time.");
+            }
+            final FileInputByteChannel inputStream = new FileInputByteChannel(in);
+            final CharsetDecodingReader decodingReader = newDecodingReader(inputStream, this.charset, this.directBuffer);
+            final LineReader reader;
+            if (this.customDelimiter != null) {
+                reader = LineReader.ofCustomDelimiter(decodingReader, this.customDelimiter, CHAR_BUFFER_SIZE);
+            } else {
+                reader = LineReader.of(decodingReader, this.lineDelimiterRecognized, CHAR_BUFFER_SIZE);
+            }
+            if (this.fieldSeparator != NO_FIELD_SEPARATOR) {
+                reader.setFieldSeparator((char) this.fieldSeparator);
+            }
+            if (this.stringCacheCapacity != NO_STRING_CACHE) {
+                reader.setStringCache(StringCache.of(this.stringCacheCapacity, MAX_CACHED_LINE_LENGTH));
+            }
+
+            return new LineDecoder(
+                    inputStream,
+                    this.charset,
+                    decodingReader,
+                    reader,
+                    this.fieldSeparator,
+                    this.stringCacheCapacity,
+                    this.directBuffer);
+        }
+
+        Builder copy() {
+            return new Builder(this);
+        }
+
+        /**
+         * Returns {@code true} if the {@link LineDecoder} has the same options as this {@code Builder}.
+         */
+        boolean isCompatible(final LineDecoder decoder) {
+            return this.charset.equals(decoder.getCharset())
+                    && this.lineDelimiterRecognized == decoder.getLineDelimiter()
+                    && Objects.equals(this.customDelimiter, decoder.getCustomDelimiter())
+                    && this.fieldSeparator == decoder.fieldSeparator
+                    && this.stringCacheCapacity == decoder.stringCacheCapacity
+                    && this.directBuffer == decoder.directBuffer;
+        }
+
+        private LineDelimiter lineDelimiterRecognized;
+        private String customDelimiter;
+        private int fieldSeparator;
+        private int stringCacheCapacity;
+        private boolean directBuffer;
+
+        private final Charset charset;
+    }
+
+    /**
+     * Rebinds this {@code LineDecoder} to another {@link org.embulk.spi.FileInput} with the same charset and line delimiter.
+     *
+     * <p>Bytes and chars buffered from the previous {@link org.embulk.spi.FileInput} are discarded. The previous
+     * {@link org.embulk.spi.FileInput} is not closed by this method. Close this {@code LineDecoder} before resetting
+     * if it should be closed.
+     *
+     * @param in  the new {@link org.embulk.spi.FileInput} to decode
+     */
+    public void reset(final FileInput in) {
+        this.inputStream = new FileInputByteChannel(in);
+        this.decodingReader.reset(this.inputStream);
+        this.reader.clear();
+        this.nextLine = null;
     }
 
     public boolean nextFile() {
@@ -81,6 +353,94 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
         }
     }
 
+    /**
+     * Returns the number of fields in the line last returned by {@link #poll()}.
+     *
+     * <p>It is always {@code 0} unless this {@code LineDecoder} is built with {@link Builder#fieldSeparator(char)}. Note that {@link #iterator()}, {@link #lines()}
+     * and {@code pollBatch} read lines ahead, then the fields do not correspond to the lines from them.
+     *
+     * @return the number of fields, which is the number of field separators plus one
+     */
+    public int getFieldCount() {
+        return this.reader.getFieldCount();
+    }
+
+    /**
+     * Returns the end offsets of fields in the line last returned by {@link #poll()}.
+     *
+     * <p>Only the first {@link #getFieldCount()} elements are valid. The {@code i}-th field is from just after
+     * the {@code (i-1)}-th end, or from {@code 0} for the first field, to the {@code i}-th end exclusively. The end of
+     * the last field is the length of the line. The array is owned by this {@code LineDecoder}, and overwritten by
+     * the next {@link #poll()}.
+     *
+     * @return the array of end offsets of fields
+     */
+    public int[] getFieldEnds() {
+        return this.reader.getFieldEnds();
+    }
+
+    /**
+     * Polls lines into {@code dest} up to its length at once.
+     *
+     * @param dest  the array to store lines into
+     * @return the number of lines polled, which is less than the length of {@code dest} only at the end of the current file
+     */
+    public int pollBatch(final String[] dest) {
+        return this.pollBatch(dest, 0, dest.length);
+    }
+
+    /**
+     * Polls lines into {@code dest} from {@code off} up to {@code len} lines at once.
+     *
+     * <p>It is equivalent to calling {@link #poll()} repeatedly. It reads each line in the same way as {@link #poll()},
+     * and does not make reading lines itself faster. The lines are stored in a page so that they can be handed off to
+     * another thread, for example, at once.
+     *
+     * @param dest  the array to store lines into
+     * @param off  the index in {@code dest} to store the first line
+     * @param len  the maximum number of lines to poll
+     * @return the number of lines polled, which is less than {@code len} only at the end of the current file
+     */
+    public int pollBatch(final String[] dest, final int off, final int len) {
+        if (off < 0 || len < 0 || off + len > dest.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (this.nextLine != null) {
+            // A line peeked by an Iterator comes first.
+            dest[off] = this.nextLine;
+            this.nextLine = null;
+            count++;
+        }
+        try {
+            return count + this.reader.readLines(dest, off + count, len - count);
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Polls up to {@code max} lines at once.
+     *
+     * @param max  the maximum number of lines to poll
+     * @return an array of lines polled, which is shorter than {@code max} only at the end of the current file, and empty after that
+     */
+    public String[] pollBatch(final int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative: " + max);
+        }
+        final String[] batch = new String[max];
+        final int count = this.pollBatch(batch, 0, max);
+        if (count < max) {
+            return Arrays.copyOf(batch, count);
+        }
+        return batch;
+    }
+
     @Override
     public void close() {
         try {
@@ -96,6 +456,24 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
         return new Ite(this);
     }
 
+    /**
+     * Returns a sequential {@link java.util.stream.Stream} of lines in the current file.
+     *
+     * <p>The {@link java.util.stream.Stream} is {@link java.util.Spliterator#ORDERED} and {@link java.util.Spliterator#NONNULL}.
+     * It is created from {@link #iterator()} by {@link java.util.Spliterators#spliteratorUnknownSize(Iterator, int)}.
+     * When it is made parallel by {@link java.util.stream.Stream#parallel()}, the {@link java.util.Spliterator} splits
+     * off lines in batches of growing size into arrays so that per-line processing, such as parsing, is spread across
+     * threads effectively. Lines are still read from this {@code LineDecoder} only by one thread at a time.
+     *
+     * <pre><code>decoder.nextFile();
+     * decoder.lines().parallel().map(line -&gt; parse(line)).forEachOrdered(record -&gt; ...);</code></pre>
+     *
+     * @return a {@link java.util.stream.Stream} of lines in the current file
+     */
+    public Stream<String> lines() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     private static class Ite implements Iterator<String> {
         public Ite(final LineDecoder self) {
             // TODO non-static inner class causes a problem with JRuby
@@ -130,37 +508,56 @@ public class LineDecoder implements AutoCloseable, Iterable<String> {
         private LineDecoder self;
     }
 
+    Charset getCharset() {
+        return this.charset;
+    }
+
+    LineDelimiter getLineDelimiter() {
+        return this.reader.getLineDelimiter();
+    }
+
+    String getCustomDelimiter() {
+        return this.reader.getCustomDelimiter();
+    }
+
+    private static CharsetDecodingReader newDecodingReader(
+            final FileInputByteChannel inputStream, final Charset charset, final boolean directBuffer) {
+        final CharsetDecoder decoder = charset
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
+
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            // UTF-8 is decoded in its dedicated path as it is the most common.
+            return new Utf8DecodingReader(inputStream, decoder, BYTE_BUFFER_SIZE, directBuffer);
+        }
+        return new CharsetDecodingReader(inputStream, decoder, BYTE_BUFFER_SIZE, directBuffer);
+    }
+
     private void skipBom() {
-        boolean skip = false;
         try {
             if (this.charset.equals(StandardCharsets.UTF_8)) {
-                this.reader.mark(3);
-                final int firstChar = this.reader.read();
-                if (firstChar == 0xFEFF) {
-                    // skip BOM bytes
-                    skip = true;
-                }
+                // skip BOM bytes
+                this.reader.skipIfNext('\uFEFF');
             }
         } catch (final IOException ex) {
             // Passing through intentionally.
-        } finally {
-            if (skip) {
-                // firstChar is skipped
-            } else {
-                // rollback to the marked position
-                try {
-                    this.reader.reset();
-                } catch (final IOException ex) {
-                    // unexpected
-                    throw new UncheckedIOException(ex);
-                }
-            }
         }
     }
 
+    private static final int BYTE_BUFFER_SIZE = 8192;
+    private static final int CHAR_BUFFER_SIZE = 8192;
+    private static final int MAX_CACHED_LINE_LENGTH = 1024;
+    private static final int NO_FIELD_SEPARATOR = -1;
+    private static final int NO_STRING_CACHE = 0;
+
     private String nextLine;
+    private FileInputByteChannel inputStream;
 
     private final Charset charset;
-    private final FileInputInputStream inputStream;
-    private final BufferedReader reader;
+    private final CharsetDecodingReader decodingReader;
+    private final LineReader reader;
+    private final int fieldSeparator;
+    private final int stringCacheCapacity;
+    private final boolean directBuffer;
 }
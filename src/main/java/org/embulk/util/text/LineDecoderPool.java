@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.spi.FileInput;
+
+/**
+ * Pools {@link LineDecoder}s of the same options to recycle them across tasks.
+ *
+ * <pre><code>LineDecoderPool pool = LineDecoderPool.of(charset, null);  // Shared, e.g. in a static field
+ *
+ * LineDecoder decoder = pool.acquire(fileInput);
+ * try {
+ *     ...
+ * } finally {
+ *     decoder.close();
+ *     pool.release(decoder);
+ * }</code></pre>
+ *
+ * <p>{@link LineDecoder}s of combined options are pooled by {@link #of(LineDecoder.Builder)}.
+ *
+ * <pre><code>LineDecoderPool pool = LineDecoderPool.of(LineDecoder.builder(charset).fieldSeparator('\t'));</code></pre>
+ *
+ * <p>This class is thread-safe while {@link LineDecoder} itself is not. A {@link LineDecoder} acquired must be used
+ * only by one thread until it is released.
+ */
+public final class LineDecoderPool {
+    private LineDecoderPool(final LineDecoder.Builder builder, final int maxIdle) {
+        this.builder = builder;
+        this.maxIdle = maxIdle;
+
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleCount = new AtomicInteger(0);
+    }
+
+    public static LineDecoderPool of(final Charset charset, final LineDelimiter lineDelimiterRecognized) {
+        return of(charset, lineDelimiterRecognized, DEFAULT_MAX_IDLE);
+    }
+
+    public static LineDecoderPool of(final Charset charset, final LineDelimiter lineDelimiterRecognized, final int maxIdle) {
+        return of(LineDecoder.builder(charset).lineDelimiter(lineDelimiterRecognized), maxIdle);
+    }
+
+    public static LineDecoderPool ofCustomDelimiter(final Charset charset, final String customDelimiter) {
+        return ofCustomDelimiter(charset, customDelimiter, DEFAULT_MAX_IDLE);
+    }
+
+    public static LineDecoderPool ofCustomDelimiter(final Charset charset, final String customDelimiter, final int maxIdle) {
+        return of(LineDecoder.builder(charset).customDelimiter(customDelimiter), maxIdle);
+    }
+
+    public static LineDecoderPool of(final LineDecoder.Builder builder) {
+        return of(builder, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates a {@code LineDecoderPool} of {@link LineDecoder}s built by the {@link LineDecoder.Builder}.
+     *
+     * <p>The options are copied from the {@link LineDecoder.Builder}, so changing the {@link LineDecoder.Builder} later
+     * does not affect this pool.
+     *
+     * @param builder  the {@link LineDecoder.Builder} with the options of {@link LineDecoder}s to pool
+     * @param maxIdle  the max number of idle {@link LineDecoder}s kept in this pool
+     * @return a {@code LineDecoderPool}
+     */
+    public static LineDecoderPool of(final LineDecoder.Builder builder, final int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must not be negative: " + maxIdle);
+        }
+        return new LineDecoderPool(builder.copy(), maxIdle);
+    }
+
+    /**
+     * Returns a {@link LineDecoder} for the {@link org.embulk.spi.FileInput}, recycled if any is idle in this pool.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @return a {@link LineDecoder} to decode {@code in}
+     */
+    public LineDecoder acquire(final FileInput in) {
+        final LineDecoder decoder = this.idle.poll();
+        if (decoder == null) {
+            return this.builder.build(in);
+        }
+        this.idleCount.decrementAndGet();
+        decoder.reset(in);
+        return decoder;
+    }
+
+    /**
+     * Returns a {@link LineDecoder} back to this pool.
+     *
+     * <p>The {@link LineDecoder} is not closed by this method. It is just dropped if this pool has enough idle ones.
+     *
+     * @param decoder  the {@link LineDecoder} which is no longer used by the caller
+     */
+    public void release(final LineDecoder decoder) {
+        if (!this.builder.isCompatible(decoder)) {
+            throw new IllegalArgumentException("LineDecoder is not compatible with the pool.");
+        }
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            return;
+        }
+        this.idle.offer(decoder);
+    }
+
+    private static final int DEFAULT_MAX_IDLE = 64;
+
+    private final LineDecoder.Builder builder;
+    private final int maxIdle;
+
+    private final ConcurrentLinkedQueue<LineDecoder> idle;
+    private final AtomicInteger idleCount;
+}
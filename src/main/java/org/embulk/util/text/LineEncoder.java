@@ -16,17 +16,19 @@
 
 package org.embulk.util.text;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
 import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.FileOutput;
-import org.embulk.util.file.FileOutputOutputStream;
 
 /**
  * Encodes {@link java.io.BufferedWriter} as iteration of lines into {@link org.embulk.spi.FileOutput}.
@@ -35,19 +37,48 @@ import org.embulk.util.file.FileOutputOutputStream;
  * interface like {@code EncoderTask}. Use {@link #of(FileOutput, Newline, Charset, BufferAllocator)} instead.
  *
  * <pre><code>LineEncoder encoder = LineEncoder.of(fileOutput, newline, charset, Exec.getBufferAllocator());</code></pre>
+ *
+ * <p>A {@code LineEncoder} can be reused for another {@link org.embulk.spi.FileOutput} by {@link #reset(FileOutput)}
+ * so that its {@link java.nio.charset.CharsetEncoder} and buffers are recycled. See also {@link LineEncoderPool}.
+ *
+ * <p>If created with a {@link java.util.zip.Checksum} factory by {@link #of(FileOutput, Newline, Charset, BufferAllocator, Supplier)},
+ * it also maintains the number of lines, the number of bytes and the checksum of each file incrementally while encoding.
+ * They are available from {@link #getFileStatistics()} without reading the files again.
+ *
+ * <p>Delimiter-separated fields can be written by {@link #addField(FieldFormat, String)}. They are escaped and quoted
+ * on the fly into the output buffer, without building an intermediate {@link String} for a field nor a line.
+ *
+ * <p>Created with {@code directBuffer}, it encodes chars into a direct {@link java.nio.ByteBuffer} off the heap, and
+ * copies the bytes from there into {@link org.embulk.spi.Buffer}s without an intermediate {@code byte[]}.
  */
 public class LineEncoder implements AutoCloseable {
     // TODO optimize
 
     private LineEncoder(
             final FileOutput fileOutput,
-            final FileOutputOutputStream outputStream,
-            final String newline,
-            final BufferedWriter writer) {
+            final FileOutputByteChannel outputStream,
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final CharsetEncodingWriter encodingWriter,
+            final ChecksumOutputStream checksumStream,
+            final boolean directBuffer) {
         this.underlyingFileOutput = fileOutput;
         this.outputStream = outputStream;
-        this.newline = newline;
-        this.writer = writer;
+        this.checksumStream = checksumStream;
+        this.newlineType = newline;
+        this.newline = newline.getString();
+        this.charset = charset;
+        this.bufferAllocator = bufferAllocator;
+        this.encodingWriter = encodingWriter;
+        this.writer = encodingWriter;
+        this.directBuffer = directBuffer;
+
+        this.fileStatistics = new ArrayList<>();
+        this.fileIndex = -1;
+        this.lineCount = 0L;
+        this.textPending = false;
+        this.fieldsInLine = 0;
     }
 
     public static LineEncoder of(
@@ -55,21 +86,122 @@ public class LineEncoder implements AutoCloseable {
             final Newline newline,
             final Charset charset,
             final BufferAllocator bufferAllocator) {
-        final FileOutputOutputStream outputStream = new FileOutputOutputStream(
-                fileOutput, bufferAllocator, FileOutputOutputStream.CloseMode.FLUSH_FINISH);
+        return of(fileOutput, newline, charset, bufferAllocator, null, false);
+    }
+
+    /**
+     * Creates a {@code LineEncoder} which encodes into a direct {@link java.nio.ByteBuffer} if {@code directBuffer} is {@code true}.
+     *
+     * @param fileOutput  the {@link org.embulk.spi.FileOutput} to encode into
+     * @param newline  the newline
+     * @param charset  the charset to encode
+     * @param bufferAllocator  the allocator of {@link org.embulk.spi.Buffer}s
+     * @param directBuffer  {@code true} to encode into a direct {@link java.nio.ByteBuffer}
+     * @return a {@code LineEncoder} to encode into {@code fileOutput}
+     */
+    public static LineEncoder of(
+            final FileOutput fileOutput,
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final boolean directBuffer) {
+        return of(fileOutput, newline, charset, bufferAllocator, null, directBuffer);
+    }
+
+    /**
+     * Creates a {@code LineEncoder} which maintains statistics of each file with a {@link java.util.zip.Checksum}.
+     *
+     * <p>For example, {@code java.util.zip.CRC32::new}, or {@code java.util.zip.CRC32C::new} on Java 9 or later, can be
+     * the factory. Any other {@link java.util.zip.Checksum} implementation, such as xxHash, can also be plugged in.
+     *
+     * @param fileOutput  the {@link org.embulk.spi.FileOutput} to encode into
+     * @param newline  the newline
+     * @param charset  the charset to encode
+     * @param bufferAllocator  the allocator of {@link org.embulk.spi.Buffer}s
+     * @param checksumFactory  the factory of {@link java.util.zip.Checksum}, or {@code null} not to maintain statistics
+     * @return a {@code LineEncoder} to encode into {@code fileOutput}
+     */
+    public static LineEncoder of(
+            final FileOutput fileOutput,
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final Supplier<? extends Checksum> checksumFactory) {
+        return of(fileOutput, newline, charset, bufferAllocator, checksumFactory, false);
+    }
+
+    /**
+     * Creates a {@code LineEncoder} which maintains statistics of each file with a {@link java.util.zip.Checksum}, and
+     * encodes into a direct {@link java.nio.ByteBuffer} if {@code directBuffer} is {@code true}.
+     *
+     * @param fileOutput  the {@link org.embulk.spi.FileOutput} to encode into
+     * @param newline  the newline
+     * @param charset  the charset to encode
+     * @param bufferAllocator  the allocator of {@link org.embulk.spi.Buffer}s
+     * @param checksumFactory  the factory of {@link java.util.zip.Checksum}, or {@code null} not to maintain statistics
+     * @param directBuffer  {@code true} to encode into a direct {@link java.nio.ByteBuffer}
+     * @return a {@code LineEncoder} to encode into {@code fileOutput}
+     */
+    public static LineEncoder of(
+            final FileOutput fileOutput,
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final Supplier<? extends Checksum> checksumFactory,
+            final boolean directBuffer) {
+        final FileOutputByteChannel outputStream = new FileOutputByteChannel(fileOutput, bufferAllocator);
+
+        final ChecksumOutputStream checksumStream;
+        if (checksumFactory != null) {
+            checksumStream = new ChecksumOutputStream(outputStream, checksumFactory.get());
+        } else {
+            checksumStream = null;
+        }
 
         final CharsetEncoder encoder = charset
                 .newEncoder()
                 .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
                 .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
 
-        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, encoder), 32 * 1024);
+        final CharsetEncodingWriter writer = new CharsetEncodingWriter(
+                checksumStream != null ? checksumStream : outputStream, encoder, CHAR_BUFFER_SIZE, BYTE_BUFFER_SIZE, directBuffer);
 
         return new LineEncoder(
                 fileOutput,
                 outputStream,
-                newline.getString(),
-                writer);
+                newline,
+                charset,
+                bufferAllocator,
+                writer,
+                checksumStream,
+                directBuffer);
+    }
+
+    /**
+     * Rebinds this {@code LineEncoder} to another {@link org.embulk.spi.FileOutput} with the same newline and charset.
+     *
+     * <p>Chars and bytes buffered, but not flushed yet, for the previous {@link org.embulk.spi.FileOutput} are discarded.
+     * The previous {@link org.embulk.spi.FileOutput} is not finished nor closed by this method. Call {@link #finish()}
+     * and {@link #close()} before resetting if they are needed. Statistics of the previous files are also discarded.
+     *
+     * @param fileOutput  the new {@link org.embulk.spi.FileOutput} to encode into
+     */
+    public void reset(final FileOutput fileOutput) {
+        this.underlyingFileOutput = fileOutput;
+        this.outputStream = new FileOutputByteChannel(fileOutput, this.bufferAllocator);
+        if (this.checksumStream != null) {
+            this.checksumStream.reset(this.outputStream);
+            this.encodingWriter.reset(this.checksumStream);
+        } else {
+            this.encodingWriter.reset(this.outputStream);
+        }
+        this.writer = this.encodingWriter;
+
+        this.fileStatistics.clear();
+        this.fileIndex = -1;
+        this.lineCount = 0L;
+        this.textPending = false;
+        this.fieldsInLine = 0;
     }
 
     public void addNewLine() {
@@ -79,6 +211,9 @@ public class LineEncoder implements AutoCloseable {
             // unexpected
             throw new UncheckedIOException(ex);
         }
+        this.lineCount++;
+        this.textPending = false;
+        this.fieldsInLine = 0;
     }
 
     public void addLine(final String line) {
@@ -98,6 +233,39 @@ public class LineEncoder implements AutoCloseable {
             // unexpected
             throw new UncheckedIOException(ex);
         }
+        if (!text.isEmpty()) {
+            this.textPending = true;
+        }
+    }
+
+    /**
+     * Adds a field to the current line, preceded by the delimiter unless it is the first field of the line.
+     *
+     * <p>The field is escaped and quoted according to the {@link FieldFormat} while it is written. End the line by
+     * {@link #addNewLine()}.
+     *
+     * <pre><code>for (String[] record : records) {
+     *     for (String value : record) {
+     *         encoder.addField(format, value);
+     *     }
+     *     encoder.addNewLine();
+     * }</code></pre>
+     *
+     * @param format  the rules to delimit, escape and quote the field
+     * @param value  the value of the field, or {@code null} to write the null string of {@code format}
+     */
+    public void addField(final FieldFormat format, final String value) {
+        try {
+            if (this.fieldsInLine > 0) {
+                this.writer.write(format.getDelimiter());
+            }
+            format.write(this.writer, value);
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+        this.fieldsInLine++;
+        this.textPending = true;
     }
 
     public void nextFile() {
@@ -107,7 +275,9 @@ public class LineEncoder implements AutoCloseable {
             // unexpected
             throw new UncheckedIOException(ex);
         }
+        this.completeFile();
         this.outputStream.nextFile();
+        this.fileIndex++;
     }
 
     public void finish() {
@@ -115,7 +285,8 @@ public class LineEncoder implements AutoCloseable {
             if (this.writer != null) {
                 this.writer.close();  // FLUSH_FINISH
                 this.writer = null;
-                // underlyingFileOutput.finish() is already called by close() because CloseMode is FLUSH_FINISH
+                // underlyingFileOutput.finish() is already called by close() of FileOutputByteChannel
+                this.completeFile();
             }
         } catch (final IOException ex) {
             throw new UncheckedIOException(ex);
@@ -128,17 +299,79 @@ public class LineEncoder implements AutoCloseable {
             if (this.writer != null) {
                 this.writer.close();  // FLUSH_FINISH
                 this.writer = null;
+                // The current file is finished by close() of FileOutputByteChannel also without finish().
+                this.completeFile();
             }
-            this.underlyingFileOutput.close();  // this is necessary because CloseMode is not FLUSH_FINISH_CLOSE
+            this.underlyingFileOutput.close();  // this is necessary because FileOutputByteChannel does not close it
         } catch (final IOException ex) {
             // unexpected
             throw new UncheckedIOException(ex);
         }
     }
 
+    /**
+     * Returns statistics of the files completed by {@link #nextFile()}, {@link #finish()} or {@link #close()} so far, in the order of files.
+     *
+     * @return the unmodifiable list of statistics, or an empty list if this {@code LineEncoder} does not maintain statistics
+     */
+    public List<EncodedFileStatistics> getFileStatistics() {
+        return Collections.unmodifiableList(this.fileStatistics);
+    }
+
+    Newline getNewline() {
+        return this.newlineType;
+    }
+
+    Charset getCharset() {
+        return this.charset;
+    }
+
+    BufferAllocator getBufferAllocator() {
+        return this.bufferAllocator;
+    }
+
+    boolean isDirectBuffer() {
+        return this.directBuffer;
+    }
+
+    boolean hasChecksum() {
+        return this.checksumStream != null;
+    }
+
+    /**
+     * Records statistics of the current file, whose bytes must be already flushed into the checksum stream.
+     */
+    private void completeFile() {
+        if (this.fileIndex >= 0 && this.checksumStream != null) {
+            this.fileStatistics.add(EncodedFileStatistics.of(
+                    this.fileIndex,
+                    this.textPending ? this.lineCount + 1 : this.lineCount,
+                    this.checksumStream.getByteCount(),
+                    this.checksumStream.getChecksumValue()));
+            this.checksumStream.resetCounts();
+        }
+        this.lineCount = 0L;
+        this.textPending = false;
+        this.fieldsInLine = 0;
+    }
+
+    private static final int CHAR_BUFFER_SIZE = 32 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 8192;
+
     private Writer writer;
+    private FileOutput underlyingFileOutput;
+    private FileOutputByteChannel outputStream;
+    private int fileIndex;
+    private long lineCount;
+    private boolean textPending;
+    private int fieldsInLine;
 
     private final String newline;
-    private final FileOutput underlyingFileOutput;
-    private final FileOutputOutputStream outputStream;
+    private final Newline newlineType;
+    private final Charset charset;
+    private final BufferAllocator bufferAllocator;
+    private final CharsetEncodingWriter encodingWriter;
+    private final ChecksumOutputStream checksumStream;
+    private final boolean directBuffer;
+    private final List<EncodedFileStatistics> fileStatistics;
 }
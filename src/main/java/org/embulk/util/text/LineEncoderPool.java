@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileOutput;
+
+/**
+ * Pools {@link LineEncoder}s of the same newline, charset, buffer allocator and direct buffer option to recycle them across tasks.
+ *
+ * <pre><code>LineEncoderPool pool = LineEncoderPool.of(newline, charset, Exec.getBufferAllocator());
+ *
+ * LineEncoder encoder = pool.acquire(fileOutput);
+ * try {
+ *     ...
+ *     encoder.finish();
+ * } finally {
+ *     encoder.close();
+ *     pool.release(encoder);
+ * }</code></pre>
+ *
+ * <p>This class is thread-safe while {@link LineEncoder} itself is not. A {@link LineEncoder} acquired must be used
+ * only by one thread until it is released.
+ */
+public final class LineEncoderPool {
+    private LineEncoderPool(
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final int maxIdle,
+            final boolean directBuffer) {
+        this.newline = newline;
+        this.charset = charset;
+        this.bufferAllocator = bufferAllocator;
+        this.maxIdle = maxIdle;
+        this.directBuffer = directBuffer;
+
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleCount = new AtomicInteger(0);
+    }
+
+    public static LineEncoderPool of(final Newline newline, final Charset charset, final BufferAllocator bufferAllocator) {
+        return of(newline, charset, bufferAllocator, DEFAULT_MAX_IDLE);
+    }
+
+    public static LineEncoderPool of(
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final int maxIdle) {
+        return of(newline, charset, bufferAllocator, maxIdle, false);
+    }
+
+    /**
+     * Creates a {@code LineEncoderPool} of {@link LineEncoder}s which encode into a direct {@link java.nio.ByteBuffer}
+     * if {@code directBuffer} is {@code true}.
+     *
+     * @param newline  the newline
+     * @param charset  the charset to encode into
+     * @param bufferAllocator  the allocator of {@link org.embulk.spi.Buffer}s
+     * @param maxIdle  the max number of idle {@link LineEncoder}s kept in this pool
+     * @param directBuffer  {@code true} to pool {@link LineEncoder}s which encode into a direct {@link java.nio.ByteBuffer}
+     * @return a {@code LineEncoderPool}
+     * @see LineEncoder#of(FileOutput, Newline, Charset, BufferAllocator, boolean)
+     */
+    public static LineEncoderPool of(
+            final Newline newline,
+            final Charset charset,
+            final BufferAllocator bufferAllocator,
+            final int maxIdle,
+            final boolean directBuffer) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must not be negative: " + maxIdle);
+        }
+        return new LineEncoderPool(
+                Objects.requireNonNull(newline, "newline"),
+                Objects.requireNonNull(charset, "charset"),
+                Objects.requireNonNull(bufferAllocator, "bufferAllocator"),
+                maxIdle,
+                directBuffer);
+    }
+
+    /**
+     * Returns a {@link LineEncoder} for the {@link org.embulk.spi.FileOutput}, recycled if any is idle in this pool.
+     *
+     * @param fileOutput  the {@link org.embulk.spi.FileOutput} to encode into
+     * @return a {@link LineEncoder} to encode into {@code fileOutput}
+     */
+    public LineEncoder acquire(final FileOutput fileOutput) {
+        final LineEncoder encoder = this.idle.poll();
+        if (encoder == null) {
+            return LineEncoder.of(fileOutput, this.newline, this.charset, this.bufferAllocator, this.directBuffer);
+        }
+        this.idleCount.decrementAndGet();
+        encoder.reset(fileOutput);
+        return encoder;
+    }
+
+    /**
+     * Returns a {@link LineEncoder} back to this pool.
+     *
+     * <p>A {@link LineEncoder} which maintains statistics with a {@link java.util.zip.Checksum} is not compatible with
+     * this pool, since this pool creates {@link LineEncoder}s without it.
+     *
+     * <p>The {@link LineEncoder} is not finished nor closed by this method. It is just dropped if this pool has enough idle ones.
+     *
+     * @param encoder  the {@link LineEncoder} which is no longer used by the caller
+     */
+    public void release(final LineEncoder encoder) {
+        if (this.newline != encoder.getNewline()
+                || !this.charset.equals(encoder.getCharset())
+                || this.bufferAllocator != encoder.getBufferAllocator()
+                || this.directBuffer != encoder.isDirectBuffer()
+                || encoder.hasChecksum()) {
+            throw new IllegalArgumentException("LineEncoder is not compatible with the pool.");
+        }
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            return;
+        }
+        this.idle.offer(encoder);
+    }
+
+    private static final int DEFAULT_MAX_IDLE = 64;
+
+    private final Newline newline;
+    private final Charset charset;
+    private final BufferAllocator bufferAllocator;
+    private final int maxIdle;
+    private final boolean directBuffer;
+
+    private final ConcurrentLinkedQueue<LineEncoder> idle;
+    private final AtomicInteger idleCount;
+}
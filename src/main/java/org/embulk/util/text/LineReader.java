@@ -19,111 +19,618 @@ package org.embulk.util.text;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
 /**
- * A {@link BufferedReader} that can specify line delimiter character from any one of CR, LF and CRLF.
- * If not specified, use original {@link BufferedReader}.
+ * A {@link BufferedReader} that can specify line delimiter character from any one of CR, LF and CRLF, or a custom
+ * delimiter string. If not specified, lines are delimited in the same way as original {@link BufferedReader}.
+ *
+ * <p>It reads from the underlying {@link Reader} into its own buffer directly, not through the buffer of
+ * {@link BufferedReader}, so that the buffer can be recycled by {@link #clear()}.
+ *
+ * <p>If a field separator is set by {@link #setFieldSeparator(char)}, it also records where fields end in each line
+ * while searching for the line delimiter, so that the line does not have to be scanned again to split into fields.
+ *
+ * <p>If a {@link StringCache} is set by {@link #setStringCache(StringCache)}, lines of the same chars share
+ * a {@link String} instance while it is cached.
  *
  * This class is not thread-safe.
  */
 class LineReader extends BufferedReader {
-    private LineReader(final Reader reader, final LineDelimiter lineDelimiter, final int bufferSize) {
-        super(reader);
+    private LineReader(
+            final Reader reader,
+            final LineDelimiter lineDelimiter,
+            final String customDelimiter,
+            final int bufferSize) {
+        super(reader, 1);  // The buffer of BufferedReader itself is not used.
 
+        this.reader = reader;
         this.lineDelimiter = lineDelimiter;
+        this.customDelimiter = customDelimiter;
         this.buffer = new char[bufferSize];
+        this.fieldSeparator = NO_FIELD_SEPARATOR;
+        this.fieldEnds = new int[INITIAL_FIELDS];
+        this.fieldCount = 0;
+        this.stringCache = null;
+
+        if (customDelimiter != null) {
+            this.customDelimiterChars = customDelimiter.toCharArray();
+            this.customDelimiterFailure = buildFailureFunction(this.customDelimiterChars);
+        } else {
+            this.customDelimiterChars = null;
+            this.customDelimiterFailure = null;
+        }
 
+        this.clear();
+    }
+
+    static LineReader of(final Reader reader, final LineDelimiter lineDelimiter, final int bufferSize) {
+        return new LineReader(reader, lineDelimiter, null, bufferSize);
+    }
+
+    static LineReader ofCustomDelimiter(final Reader reader, final String customDelimiter, final int bufferSize) {
+        if (customDelimiter == null || customDelimiter.isEmpty()) {
+            throw new IllegalArgumentException("Custom line delimiter must not be empty.");
+        }
+        return new LineReader(reader, null, customDelimiter, bufferSize);
+    }
+
+    /**
+     * Discards all the chars buffered so that this reader can continue with the underlying {@link Reader} reset.
+     */
+    void clear() {
         this.offset = UNREAD;
         this.charsRead = 0;
+        this.skipLf = false;
+        this.lastLineDelimited = false;
     }
 
-    static BufferedReader of(final Reader reader, final LineDelimiter lineDelimiter, final int bufferSize) {
-        if (lineDelimiter == null) {
-            return new BufferedReader(reader);
+    /**
+     * Skips the next char only if it is the specified char, such as BOM.
+     */
+    boolean skipIfNext(final char c) throws IOException {
+        if (!this.ensureBuffered()) {
+            return false;
+        }
+        if (this.skipLf && this.buffer[this.offset] == '\n') {
+            // The LF is skipped only when the char next to the LF is skipped, as BufferedReader#read() does.
+            if (this.ensureBuffered(2) && this.buffer[this.offset + 1] == c) {
+                this.skipLf = false;
+                this.advance(2);
+                return true;
+            }
+            return false;
+        }
+        if (this.buffer[this.offset] == c) {
+            this.skipLf = false;
+            this.advance(1);
+            return true;
         }
-        return new LineReader(reader, lineDelimiter, bufferSize);
+        return false;
+    }
+
+    /**
+     * Sets the field separator whose positions are recorded by {@link #readLine()}.
+     *
+     * <p>CR and LF cannot be the field separator.
+     */
+    void setFieldSeparator(final char fieldSeparator) {
+        if (fieldSeparator == '\r' || fieldSeparator == '\n') {
+            throw new IllegalArgumentException("CR and LF cannot be a field separator.");
+        }
+        this.fieldSeparator = fieldSeparator;
+    }
+
+    void setStringCache(final StringCache stringCache) {
+        this.stringCache = stringCache;
+    }
+
+    /**
+     * Returns the number of fields in the line last read by {@link #readLine()}.
+     */
+    int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Returns the ends of fields in the line last read by {@link #readLine()}, which are valid up to {@link #getFieldCount()}.
+     *
+     * <p>The array is reused by the next {@link #readLine()}.
+     */
+    int[] getFieldEnds() {
+        return this.fieldEnds;
+    }
+
+    LineDelimiter getLineDelimiter() {
+        return this.lineDelimiter;
+    }
+
+    String getCustomDelimiter() {
+        return this.customDelimiter;
     }
 
     @Override
     public String readLine() throws IOException {
-        StringBuilder line = null;
-        char prevChar = Character.MIN_VALUE;
+        this.fieldCount = 0;
+        final String line;
+        if (this.customDelimiter != null) {
+            line = this.readLineWithCustomDelimiter();
+        } else if (this.lineDelimiter == null) {
+            line = this.readLineWithoutDelimiter();
+        } else {
+            line = this.readLineWithLineDelimiter();
+        }
+        if (line != null && this.fieldSeparator != NO_FIELD_SEPARATOR) {
+            this.completeFields(line.length());
+        }
+        return line;
+    }
+
+    /**
+     * Reads a line delimited by the {@link LineDelimiter}.
+     *
+     * <p>CR at the end of the buffer is kept pending as a state, not looked ahead, until the buffer is refilled. Then, the
+     * next char decides whether the CR is a delimiter or a part of CRLF. An empty line is returned at the end of input
+     * just after a delimiter.
+     */
+    private String readLineWithLineDelimiter() throws IOException {
+        final LineDelimiter lineDelimiter = this.lineDelimiter;
+        final int fieldSeparator = this.fieldSeparator;
 
-        bufferLoop:
-        while (this.offset != UNREAD || (charsRead = this.read(buffer)) != -1) {
-            if (this.offset == UNREAD) {
-                // Initialize offset after read chars to buffer
-                this.offset = 0;
+        StringBuilder line = null;
+        boolean pendingCr = false;  // CR mode and CRLF mode: the last char of the previous buffer is CR.
+        boolean lastCr = false;  // LF mode: the last char of the line is CR.
+        while (true) {
+            if (!this.ensureBuffered()) {
+                if (pendingCr) {
+                    if (lineDelimiter == LineDelimiter.CR) {
+                        this.lastLineDelimited = true;
+                        return this.newString(line);
+                    }
+                    line.append('\r');
+                }
+                if (line != null) {
+                    this.lastLineDelimited = false;
+                    return this.newString(line);
+                }
+                if (this.lastLineDelimited) {
+                    this.lastLineDelimited = false;
+                    return "";
+                }
+                return null;
             }
-            if (line == null) {
-                // Initialize line's buffer for the first loop
-                line = new StringBuilder();
+
+            final char[] buffer = this.buffer;
+            final int start = this.offset;
+            final int end = this.charsRead;
+
+            if (pendingCr) {
+                pendingCr = false;
+                final char next = buffer[start];
+                if (lineDelimiter == LineDelimiter.CR && next != '\n') {
+                    return this.endLine(line, buffer, start, start, start);
+                }
+                if (lineDelimiter == LineDelimiter.CRLF && next == '\n') {
+                    return this.endLine(line, buffer, start, start, start + 1);
+                }
+                line.append('\r');
             }
-            for (int i = offset; i < charsRead; i++) {
-                final char c = buffer[i];
-                boolean isEol = false;
-                switch (lineDelimiter) {
-                    case CR:
-                        if (c == '\r') {
-                            final Character next = this.readNext();
-                            if (next == null || next != '\n') {
-                                isEol = true;
+
+            final int base = (line == null ? 0 : line.length()) - start;
+            int i = start;
+            switch (lineDelimiter) {
+                case CR:
+                    for (; i < end; i++) {
+                        final char c = buffer[i];
+                        if (c == fieldSeparator) {
+                            this.addFieldSeparator(base + i);
+                        } else if (c == '\r') {
+                            if (i + 1 == end) {
+                                pendingCr = true;
+                                break;
+                            }
+                            if (buffer[i + 1] != '\n') {
+                                return this.endLine(line, buffer, start, i, i + 1);
                             }
                         }
-                        break;
-                    case LF:
-                        if (prevChar != '\r' && c == '\n') {
-                            isEol = true;
+                    }
+                    break;
+                case LF:
+                    for (; i < end; i++) {
+                        final char c = buffer[i];
+                        if (c == '\n' && !lastCr) {
+                            return this.endLine(line, buffer, start, i, i + 1);
                         }
-                        break;
-                    case CRLF:
-                        if (prevChar == '\r' && c == '\n') {
-                            // Delete unnecessary CR
-                            line.deleteCharAt(line.length() - 1);
-                            isEol = true;
+                        if (c == fieldSeparator) {
+                            this.addFieldSeparator(base + i);
                         }
-                        break;
-                    default:
-                        throw new IllegalStateException("Unsupported line delimiter " + this.lineDelimiter);
+                        lastCr = (c == '\r');
+                    }
+                    break;
+                case CRLF:
+                    for (; i < end; i++) {
+                        final char c = buffer[i];
+                        if (c == fieldSeparator) {
+                            this.addFieldSeparator(base + i);
+                        } else if (c == '\r') {
+                            if (i + 1 == end) {
+                                pendingCr = true;
+                                break;
+                            }
+                            if (buffer[i + 1] == '\n') {
+                                return this.endLine(line, buffer, start, i, i + 2);
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported line delimiter " + this.lineDelimiter);
+            }
+
+            // The pending CR, if any, is not appended until the next char is seen.
+            if (line == null) {
+                line = new StringBuilder();
+            }
+            line.append(buffer, start, i - start);
+            this.offset = end;
+        }
+    }
+
+    /**
+     * Returns the line ended by a delimiter, which is the line so far and chars from {@code start} to {@code end} in the buffer.
+     */
+    private String endLine(
+            final StringBuilder line, final char[] buffer, final int start, final int end, final int nextOffset) {
+        this.offset = nextOffset;
+        this.lastLineDelimited = true;
+        if (line == null) {
+            return this.newString(buffer, start, end - start);
+        }
+        return this.newString(line.append(buffer, start, end - start));
+    }
+
+    /**
+     * Reads lines into {@code dest} up to {@code len} lines by {@link #readLine()} for each.
+     *
+     * @return the number of lines read, which is less than {@code len} only at the end of input
+     */
+    int readLines(final String[] dest, final int off, final int len) throws IOException {
+        int count = 0;
+        while (count < len) {
+            final String line = this.readLine();
+            if (line == null) {
+                break;
+            }
+            dest[off + count] = line;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!this.ensureReadable()) {
+            return -1;
+        }
+        final char c = this.buffer[this.offset];
+        this.advance(1);
+        return c;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > cbuf.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.ensureReadable()) {
+            return -1;
+        }
+        final int read = Math.min(len, this.charsRead - this.offset);
+        System.arraycopy(this.buffer, this.offset, cbuf, off, read);
+        this.advance(read);
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n < 0L) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        long skipped = 0L;
+        while (skipped < n && this.ensureReadable()) {
+            final int chunk = (int) Math.min(n - skipped, this.charsRead - this.offset);
+            this.advance(chunk);
+            skipped += chunk;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return (this.offset != UNREAD && this.offset < this.charsRead) || this.reader.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The buffer is kept so that it can be reused after clear().
+        this.reader.close();
+    }
+
+    /**
+     * Reads a line delimited by any one of CR, LF and CRLF in the same way as {@link BufferedReader#readLine()}.
+     */
+    private String readLineWithoutDelimiter() throws IOException {
+        StringBuilder line = null;
+        while (true) {
+            if (!this.ensureBuffered()) {
+                if (line != null) {
+                    return this.newString(line);
                 }
-                this.offset++;
-                if (isEol) {
-                    break bufferLoop;
+                return null;
+            }
+            if (this.skipLf) {
+                this.skipLf = false;
+                if (this.buffer[this.offset] == '\n') {
+                    this.offset++;
+                    continue;
+                }
+            }
+            final int start = this.offset;
+            final int base = (line == null ? 0 : line.length()) - start;
+            for (int i = start; i < this.charsRead; i++) {
+                final char c = this.buffer[i];
+                if (c == this.fieldSeparator) {
+                    this.addFieldSeparator(base + i);
+                } else if (c == '\n' || c == '\r') {
+                    this.offset = i + 1;
+                    this.skipLf = (c == '\r');
+                    if (line == null) {
+                        return this.newString(this.buffer, start, i - start);
+                    }
+                    return this.newString(line.append(this.buffer, start, i - start));
                 }
-                line.append(c);
-                prevChar = c;
             }
-            // Set "UNREAD" to read next chars
+            if (line == null) {
+                line = new StringBuilder();
+            }
+            line.append(this.buffer, start, this.charsRead - start);
+            this.offset = this.charsRead;
+        }
+    }
+
+    /**
+     * Consumes chars in the buffer out of {@link #readLine()}.
+     *
+     * <p>It sets "UNREAD" when the buffer is consumed up so that {@link #readLine()} does not take it as just after a delimiter.
+     */
+    private void advance(final int n) {
+        this.offset += n;
+        if (this.offset >= this.charsRead) {
             this.offset = UNREAD;
         }
+    }
+
+    /**
+     * Reads a line delimited by the custom delimiter string.
+     *
+     * <p>The delimiter is searched by the Knuth-Morris-Pratt algorithm. Its state is kept across buffer refills so that
+     * a delimiter split by the buffer boundary is found without looking ahead. An empty line is returned at the end of
+     * input just after a delimiter, in the same way as {@link LineDelimiter}s.
+     */
+    private String readLineWithCustomDelimiter() throws IOException {
+        final char[] delimiter = this.customDelimiterChars;
+        final int[] failure = this.customDelimiterFailure;
+        final char first = delimiter[0];
+        final int length = delimiter.length;
+
+        StringBuilder line = null;
+        int matched = 0;
+        while (true) {
+            if (!this.ensureBuffered()) {
+                if (line != null) {
+                    this.lastLineDelimited = false;
+                    return this.newString(line);
+                }
+                if (this.lastLineDelimited) {
+                    this.lastLineDelimited = false;
+                    return "";
+                }
+                return null;
+            }
+            final char[] buffer = this.buffer;
+            final int start = this.offset;
+            final int end = this.charsRead;
+            final int fieldSeparator = this.fieldSeparator;
+            // Positions of field separators are recorded including the delimiter, and trimmed by completeFields().
+            final int base = (line == null ? 0 : line.length()) - start;
+            int i = start;
+            while (i < end) {
+                if (matched == 0) {
+                    // Skip fast to the first char of the delimiter.
+                    while (i < end && buffer[i] != first) {
+                        if (buffer[i] == fieldSeparator) {
+                            this.addFieldSeparator(base + i);
+                        }
+                        i++;
+                    }
+                    if (i == end) {
+                        break;
+                    }
+                    if (first == fieldSeparator) {
+                        this.addFieldSeparator(base + i);
+                    }
+                    matched = 1;
+                } else {
+                    final char c = buffer[i];
+                    if (c == fieldSeparator) {
+                        this.addFieldSeparator(base + i);
+                    }
+                    while (matched > 0 && c != delimiter[matched]) {
+                        matched = failure[matched - 1];
+                    }
+                    if (c == delimiter[matched]) {
+                        matched++;
+                    }
+                }
+                i++;
+                if (matched == length) {
+                    this.offset = i;
+                    this.lastLineDelimited = true;
+                    if (line == null) {
+                        return this.newString(buffer, start, i - length - start);
+                    }
+                    line.append(buffer, start, i - start);
+                    line.setLength(line.length() - length);
+                    return this.newString(line);
+                }
+            }
+            if (line == null) {
+                line = new StringBuilder();
+            }
+            line.append(buffer, start, end - start);
+            this.offset = end;
+        }
+    }
+
+    private String newString(final char[] chars, final int offset, final int length) {
+        if (this.stringCache == null) {
+            return new String(chars, offset, length);
+        }
+        return this.stringCache.get(chars, offset, length);
+    }
+
+    private String newString(final StringBuilder builder) {
+        if (this.stringCache == null) {
+            return builder.toString();
+        }
+        return this.stringCache.get(builder);
+    }
 
-        if (line != null) {
-            return line.toString();
+    private void addFieldSeparator(final int position) {
+        // One more slot is kept for the end of the last field.
+        if (this.fieldCount + 1 >= this.fieldEnds.length) {
+            this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.fieldEnds.length * 2);
         }
-        return null;
+        this.fieldEnds[this.fieldCount++] = position;
     }
 
-    private Character readNext() throws IOException {
-        if (this.offset < this.charsRead - 1) {
-            // From buffer
-            return this.buffer[this.offset + 1];
+    /**
+     * Drops field separators recorded in the line delimiter, and appends the end of the last field.
+     */
+    private void completeFields(final int length) {
+        while (this.fieldCount > 0 && this.fieldEnds[this.fieldCount - 1] >= length) {
+            this.fieldCount--;
         }
-        // From reader
-        this.mark(1);
-        final char[] tmp = new char[1];
-        final int read = this.read(tmp);
-        this.reset();
-        if (read == -1) {
-            return null;
+        this.fieldEnds[this.fieldCount++] = length;
+    }
+
+    /**
+     * Builds the failure function of the Knuth-Morris-Pratt algorithm to search for a custom delimiter.
+     *
+     * <p>{@code failure[i]} is the length of the longest proper prefix of {@code pattern[0..i]} which is also its suffix.
+     * It is shared with {@link LineTranscoder} so that both match a custom delimiter in the same way.
+     */
+    static int[] buildFailureFunction(final char[] pattern) {
+        final int[] failure = new int[pattern.length];
+        int matched = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (matched > 0 && pattern[i] != pattern[matched]) {
+                matched = failure[matched - 1];
+            }
+            if (pattern[i] == pattern[matched]) {
+                matched++;
+            }
+            failure[i] = matched;
+        }
+        return failure;
+    }
+
+    private boolean ensureBuffered() throws IOException {
+        while (this.offset == UNREAD || this.offset >= this.charsRead) {
+            this.charsRead = this.reader.read(this.buffer, 0, this.buffer.length);
+            if (this.charsRead == -1) {
+                this.offset = UNREAD;
+                this.charsRead = 0;
+                return false;
+            }
+            this.offset = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Ensures at least {@code n} chars in the buffer, moving the chars remaining to the head of the buffer.
+     */
+    private boolean ensureBuffered(final int n) throws IOException {
+        if (!this.ensureBuffered()) {
+            return false;
+        }
+        while (this.charsRead - this.offset < n) {
+            final int remaining = this.charsRead - this.offset;
+            System.arraycopy(this.buffer, this.offset, this.buffer, 0, remaining);
+            this.offset = 0;
+            this.charsRead = remaining;
+            final int read = this.reader.read(this.buffer, remaining, this.buffer.length - remaining);
+            if (read == -1) {
+                return false;
+            }
+            this.charsRead += read;
+        }
+        return true;
+    }
+
+    /**
+     * Ensures chars to read out of {@link #readLine()}, skipping LF just after CR as {@link BufferedReader#read()} does.
+     */
+    private boolean ensureReadable() throws IOException {
+        while (this.ensureBuffered()) {
+            if (this.skipLf) {
+                this.skipLf = false;
+                if (this.buffer[this.offset] == '\n') {
+                    this.advance(1);
+                    continue;
+                }
+            }
+            return true;
         }
-        return tmp[0];
+        return false;
     }
 
     private static final int UNREAD = -1;
+    private static final int NO_FIELD_SEPARATOR = -1;
+    private static final int INITIAL_FIELDS = 16;
 
     private int offset;
     private int charsRead;
+    private boolean skipLf;
+    private boolean lastLineDelimited;
+    private int fieldSeparator;
+    private int[] fieldEnds;
+    private int fieldCount;
+    private StringCache stringCache;
 
+    private final Reader reader;
     private final LineDelimiter lineDelimiter;
+    private final String customDelimiter;
+    private final char[] customDelimiterChars;
+    private final int[] customDelimiterFailure;
     private final char[] buffer;
 }
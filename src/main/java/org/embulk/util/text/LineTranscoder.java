@@ -0,0 +1,385 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.FileOutput;
+import org.embulk.util.file.FileInputInputStream;
+import org.embulk.util.file.FileOutputOutputStream;
+
+/**
+ * Transcodes {@link org.embulk.spi.FileInput} into {@link org.embulk.spi.FileOutput} converting the charset and newlines.
+ *
+ * <p>It is equivalent to polling lines from {@link LineDecoder} and adding them into {@link LineEncoder}, but it streams
+ * chars through reusable buffers without creating an object per line. Line delimiters recognized are replaced with the
+ * newline. Other chars, including CR and LF which are not recognized as delimiters, are kept as they are. A newline is
+ * not appended to the end of a file which does not end with a delimiter. Each file of the input is transcoded into a file
+ * of the output.
+ *
+ * <pre><code>try (LineTranscoder transcoder = LineTranscoder.of(
+ *         fileInput, Charset.forName("Shift_JIS"), LineDelimiter.CRLF,
+ *         fileOutput, StandardCharsets.UTF_8, Newline.LF, Exec.getBufferAllocator())) {
+ *     transcoder.transcode();
+ * }</code></pre>
+ */
+public class LineTranscoder implements AutoCloseable {
+    private LineTranscoder(
+            final FileInputInputStream inputStream,
+            final Charset sourceCharset,
+            final CharsetDecodingReader reader,
+            final LineDelimiter lineDelimiterRecognized,
+            final String customDelimiter,
+            final FileOutput fileOutput,
+            final FileOutputOutputStream outputStream,
+            final CharsetEncodingWriter writer,
+            final Newline newline) {
+        this.inputStream = inputStream;
+        this.sourceCharset = sourceCharset;
+        this.reader = reader;
+        this.lineDelimiterRecognized = lineDelimiterRecognized;
+        this.underlyingFileOutput = fileOutput;
+        this.outputStream = outputStream;
+        this.writer = writer;
+        this.newline = newline.getString();
+        this.chars = new char[CHAR_BUFFER_SIZE];
+
+        if (customDelimiter != null) {
+            this.customDelimiterChars = customDelimiter.toCharArray();
+            this.customDelimiterFailure = LineReader.buildFailureFunction(this.customDelimiterChars);
+        } else {
+            this.customDelimiterChars = null;
+            this.customDelimiterFailure = null;
+        }
+
+        this.pendingCr = false;
+        this.matched = 0;
+        this.finished = false;
+    }
+
+    public static LineTranscoder of(
+            final FileInput in,
+            final Charset sourceCharset,
+            final LineDelimiter lineDelimiterRecognized,
+            final FileOutput fileOutput,
+            final Charset targetCharset,
+            final Newline newline,
+            final BufferAllocator bufferAllocator) {
+        return create(in, sourceCharset, lineDelimiterRecognized, null, fileOutput, targetCharset, newline, bufferAllocator);
+    }
+
+    public static LineTranscoder ofCustomDelimiter(
+            final FileInput in,
+            final Charset sourceCharset,
+            final String customDelimiter,
+            final FileOutput fileOutput,
+            final Charset targetCharset,
+            final Newline newline,
+            final BufferAllocator bufferAllocator) {
+        if (customDelimiter == null || customDelimiter.isEmpty()) {
+            throw new IllegalArgumentException("Custom line delimiter must not be empty.");
+        }
+        return create(in, sourceCharset, null, customDelimiter, fileOutput, targetCharset, newline, bufferAllocator);
+    }
+
+    /**
+     * Transcodes all the files of the input into the output, and finishes the output.
+     */
+    public void transcode() {
+        try {
+            while (this.inputStream.nextFile()) {
+                this.outputStream.nextFile();
+                this.transcodeFile();
+                this.writer.flush();
+            }
+            this.writer.close();  // FLUSH_FINISH
+            this.finished = true;
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                this.reader.close();
+            } finally {
+                if (!this.finished) {
+                    this.writer.close();  // FLUSH_FINISH
+                }
+                this.underlyingFileOutput.close();  // this is necessary because CloseMode is not FLUSH_FINISH_CLOSE
+            }
+        } catch (final IOException ex) {
+            // unexpected
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static LineTranscoder create(
+            final FileInput in,
+            final Charset sourceCharset,
+            final LineDelimiter lineDelimiterRecognized,
+            final String customDelimiter,
+            final FileOutput fileOutput,
+            final Charset targetCharset,
+            final Newline newline,
+            final BufferAllocator bufferAllocator) {
+        final FileInputInputStream inputStream = new FileInputInputStream(in);
+        final CharsetDecoder decoder = sourceCharset
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
+        final CharsetDecodingReader reader;
+        if (sourceCharset.equals(StandardCharsets.UTF_8)) {
+            reader = new Utf8DecodingReader(inputStream, decoder, BYTE_BUFFER_SIZE);
+        } else {
+            reader = new CharsetDecodingReader(inputStream, decoder, BYTE_BUFFER_SIZE);
+        }
+
+        final FileOutputOutputStream outputStream = new FileOutputOutputStream(
+                fileOutput, bufferAllocator, FileOutputOutputStream.CloseMode.FLUSH_FINISH);
+        final CharsetEncoder encoder = targetCharset
+                .newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)  // TODO configurable?
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);  // TODO configurable?
+        final CharsetEncodingWriter writer = new CharsetEncodingWriter(outputStream, encoder, CHAR_BUFFER_SIZE, BYTE_BUFFER_SIZE);
+
+        return new LineTranscoder(
+                inputStream,
+                sourceCharset,
+                reader,
+                lineDelimiterRecognized,
+                customDelimiter,
+                fileOutput,
+                outputStream,
+                writer,
+                newline);
+    }
+
+    private void transcodeFile() throws IOException {
+        this.pendingCr = false;
+        this.matched = 0;
+
+        boolean first = true;
+        int read;
+        while ((read = this.reader.read(this.chars, 0, this.chars.length)) != -1) {
+            int start = 0;
+            if (first) {
+                first = false;
+                if (this.sourceCharset.equals(StandardCharsets.UTF_8) && this.chars[0] == '\uFEFF') {
+                    // skip BOM
+                    start = 1;
+                }
+            }
+            if (this.customDelimiterChars != null) {
+                this.transcodeWithCustomDelimiter(start, read);
+            } else if (this.lineDelimiterRecognized == null) {
+                this.transcodeWithoutDelimiter(start, read);
+            } else {
+                switch (this.lineDelimiterRecognized) {
+                    case CR:
+                        this.transcodeWithCr(start, read);
+                        break;
+                    case LF:
+                        this.transcodeWithLf(start, read);
+                        break;
+                    case CRLF:
+                        this.transcodeWithCrlf(start, read);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported line delimiter " + this.lineDelimiterRecognized);
+                }
+            }
+        }
+
+        // The end of the file
+        if (this.customDelimiterChars != null) {
+            this.writer.write(this.customDelimiterChars, 0, this.matched);
+        } else if (this.pendingCr) {
+            if (this.lineDelimiterRecognized == LineDelimiter.CR) {
+                this.writer.write(this.newline);
+            } else if (this.lineDelimiterRecognized == LineDelimiter.CRLF) {
+                this.writer.write('\r');
+            }
+        }
+    }
+
+    /**
+     * Replaces any one of CR, LF and CRLF in the same way as {@link java.io.BufferedReader#readLine()}.
+     */
+    private void transcodeWithoutDelimiter(final int start, final int end) throws IOException {
+        final char[] chars = this.chars;
+        int segment = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (this.pendingCr) {
+                this.pendingCr = false;
+                if (c == '\n') {
+                    segment = i + 1;
+                    continue;
+                }
+            }
+            if (c == '\r' || c == '\n') {
+                this.writer.write(chars, segment, i - segment);
+                this.writer.write(this.newline);
+                segment = i + 1;
+                this.pendingCr = (c == '\r');
+            }
+        }
+        this.writer.write(chars, segment, end - segment);
+    }
+
+    /**
+     * Replaces CR which is not followed by LF. The CR is held in {@code pendingCr} until the next char comes.
+     */
+    private void transcodeWithCr(final int start, final int end) throws IOException {
+        final char[] chars = this.chars;
+        int segment = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (this.pendingCr) {
+                this.pendingCr = false;
+                if (c == '\n') {
+                    this.writer.write('\r');
+                } else {
+                    this.writer.write(this.newline);
+                }
+            }
+            if (c == '\r') {
+                this.writer.write(chars, segment, i - segment);
+                segment = i + 1;
+                this.pendingCr = true;
+            }
+        }
+        this.writer.write(chars, segment, end - segment);
+    }
+
+    /**
+     * Replaces LF which is not preceded by CR. {@code pendingCr} keeps whether the last char was CR.
+     */
+    private void transcodeWithLf(final int start, final int end) throws IOException {
+        final char[] chars = this.chars;
+        int segment = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (c == '\n' && !this.pendingCr) {
+                this.writer.write(chars, segment, i - segment);
+                this.writer.write(this.newline);
+                segment = i + 1;
+            } else {
+                this.pendingCr = (c == '\r');
+            }
+        }
+        this.writer.write(chars, segment, end - segment);
+    }
+
+    /**
+     * Replaces CRLF. The CR is held in {@code pendingCr} until the next char comes.
+     */
+    private void transcodeWithCrlf(final int start, final int end) throws IOException {
+        final char[] chars = this.chars;
+        int segment = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (this.pendingCr) {
+                this.pendingCr = false;
+                if (c == '\n') {
+                    this.writer.write(this.newline);
+                    segment = i + 1;
+                    continue;
+                }
+                this.writer.write('\r');
+            }
+            if (c == '\r') {
+                this.writer.write(chars, segment, i - segment);
+                segment = i + 1;
+                this.pendingCr = true;
+            }
+        }
+        this.writer.write(chars, segment, end - segment);
+    }
+
+    /**
+     * Replaces the custom delimiter searched by the Knuth-Morris-Pratt algorithm.
+     *
+     * <p>Chars partially matching the delimiter are held until the match completes or fails. They are always a prefix of
+     * the delimiter, so they are written from the delimiter itself when the match fails.
+     */
+    private void transcodeWithCustomDelimiter(final int start, final int end) throws IOException {
+        final char[] chars = this.chars;
+        final char[] delimiter = this.customDelimiterChars;
+        final int[] failure = this.customDelimiterFailure;
+        int segment = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (this.matched == 0) {
+                if (c != delimiter[0]) {
+                    continue;
+                }
+                this.writer.write(chars, segment, i - segment);
+                this.matched = 1;
+            } else {
+                while (this.matched > 0 && c != delimiter[this.matched]) {
+                    final int fallback = failure[this.matched - 1];
+                    this.writer.write(delimiter, 0, this.matched - fallback);
+                    this.matched = fallback;
+                }
+                if (c == delimiter[this.matched]) {
+                    this.matched++;
+                }
+            }
+            if (this.matched == delimiter.length) {
+                this.writer.write(this.newline);
+                this.matched = 0;
+                segment = i + 1;
+            } else if (this.matched > 0) {
+                segment = i + 1;
+            } else {
+                segment = i;
+            }
+        }
+        this.writer.write(chars, segment, end - segment);
+    }
+
+    private static final int BYTE_BUFFER_SIZE = 8192;
+    private static final int CHAR_BUFFER_SIZE = 32 * 1024;
+
+    private boolean pendingCr;
+    private int matched;
+    private boolean finished;
+
+    private final FileInputInputStream inputStream;
+    private final Charset sourceCharset;
+    private final CharsetDecodingReader reader;
+    private final LineDelimiter lineDelimiterRecognized;
+    private final char[] customDelimiterChars;
+    private final int[] customDelimiterFailure;
+    private final FileOutput underlyingFileOutput;
+    private final FileOutputOutputStream outputStream;
+    private final CharsetEncodingWriter writer;
+    private final String newline;
+    private final char[] chars;
+}
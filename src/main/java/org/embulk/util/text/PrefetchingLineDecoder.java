@@ -0,0 +1,347 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.embulk.spi.FileInput;
+
+/**
+ * Decodes {@link org.embulk.spi.FileInput} into iteration of lines, decoding ahead on a background thread.
+ *
+ * <p>It works like {@link LineDecoder}, but a background thread reads and decodes the files into bounded batches
+ * of lines while the caller consumes lines. The background thread continues to the next files across file boundaries,
+ * so that latency to open each file, such as to decompress, overlaps with the caller's processing. Files and lines
+ * are returned in the same order as {@link LineDecoder}, and {@link #nextFile()} skips lines remaining in the current file.
+ *
+ * <pre><code>try (PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(fileInput, charset, null)) {
+ *     while (decoder.nextFile()) {
+ *         for (String line : decoder) {
+ *             ...
+ *         }
+ *     }
+ * }</code></pre>
+ *
+ * <p>{@link org.embulk.spi.FileInput} is read only by the background thread after the first {@link #nextFile()}, and
+ * closed by {@link #close()} after the background thread stops. This class itself is not thread-safe.
+ */
+public class PrefetchingLineDecoder implements AutoCloseable, Iterable<String> {
+    private PrefetchingLineDecoder(
+            final LineDecoder decoder,
+            final int maxBatches,
+            final int batchSize,
+            final ThreadFactory threadFactory) {
+        this.decoder = decoder;
+        this.batchSize = batchSize;
+        this.threadFactory = threadFactory;
+        this.queue = new ArrayBlockingQueue<>(maxBatches);
+
+        this.thread = null;
+        this.current = null;
+        this.currentIndex = 0;
+        this.peeked = null;
+        this.nextLine = null;
+        this.finished = false;
+    }
+
+    public static PrefetchingLineDecoder of(final FileInput in, final Charset charset, final LineDelimiter lineDelimiterRecognized) {
+        return of(in, charset, lineDelimiterRecognized, DEFAULT_MAX_BATCHES, DEFAULT_THREAD_FACTORY);
+    }
+
+    /**
+     * Creates a {@code PrefetchingLineDecoder}.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @param charset  the charset of the input
+     * @param lineDelimiterRecognized  the line delimiter, or {@code null} to recognize any of CR, LF and CRLF
+     * @param maxBatches  the max number of batches of lines decoded ahead, each of which has up to 1024 lines
+     * @param threadFactory  the factory of the background thread
+     * @return a {@code PrefetchingLineDecoder} to decode {@code in}
+     */
+    public static PrefetchingLineDecoder of(
+            final FileInput in,
+            final Charset charset,
+            final LineDelimiter lineDelimiterRecognized,
+            final int maxBatches,
+            final ThreadFactory threadFactory) {
+        return of(in, LineDecoder.builder(charset).lineDelimiter(lineDelimiterRecognized), maxBatches, threadFactory);
+    }
+
+    public static PrefetchingLineDecoder of(final FileInput in, final LineDecoder.Builder builder) {
+        return of(in, builder, DEFAULT_MAX_BATCHES, DEFAULT_THREAD_FACTORY);
+    }
+
+    /**
+     * Creates a {@code PrefetchingLineDecoder} decoding with the options of the {@link LineDecoder.Builder}.
+     *
+     * <p>The {@link LineDecoder} is built immediately, so changing the {@link LineDecoder.Builder} later does not affect
+     * the {@code PrefetchingLineDecoder}.
+     *
+     * @param in  the {@link org.embulk.spi.FileInput} to decode
+     * @param builder  the {@link LineDecoder.Builder} with the options, such as a custom delimiter or a string cache
+     * @param maxBatches  the max number of batches of lines decoded ahead, each of which has up to 1024 lines
+     * @param threadFactory  the factory of the background thread
+     * @return a {@code PrefetchingLineDecoder} to decode {@code in}
+     */
+    public static PrefetchingLineDecoder of(
+            final FileInput in,
+            final LineDecoder.Builder builder,
+            final int maxBatches,
+            final ThreadFactory threadFactory) {
+        if (maxBatches <= 0) {
+            throw new IllegalArgumentException("maxBatches must be positive: " + maxBatches);
+        }
+        return new PrefetchingLineDecoder(builder.build(in), maxBatches, BATCH_SIZE, threadFactory);
+    }
+
+    public boolean nextFile() {
+        if (this.thread == null) {
+            this.thread = this.threadFactory.newThread(this::prefetch);
+            this.thread.start();
+        }
+        this.current = null;
+        this.nextLine = null;
+        while (true) {
+            final Batch batch = this.take();
+            if (batch == FILE) {
+                return true;
+            }
+            if (batch == END) {
+                this.peeked = END;
+                return false;
+            }
+            // Lines remaining in the current file are skipped.
+        }
+    }
+
+    public String poll() {
+        while (this.current == null || this.currentIndex >= this.current.count) {
+            if (this.thread == null) {
+                return null;
+            }
+            final Batch batch = this.take();
+            if (batch == FILE || batch == END) {
+                // The end of the current file. The marker is kept for the next nextFile().
+                this.peeked = batch;
+                this.current = null;
+                return null;
+            }
+            this.current = batch;
+            this.currentIndex = 0;
+        }
+        final String line = this.current.lines[this.currentIndex];
+        this.current.lines[this.currentIndex] = null;
+        this.currentIndex++;
+        return line;
+    }
+
+    /**
+     * Stops the background thread, and closes the {@link org.embulk.spi.FileInput}.
+     *
+     * <p>It waits for the background thread to stop so that the {@link org.embulk.spi.FileInput} is not closed while it
+     * is being read.
+     */
+    @Override
+    public void close() {
+        try {
+            if (this.thread != null) {
+                this.finished = true;
+                this.thread.interrupt();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        this.thread.join();
+                        break;
+                    } catch (final InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            this.queue.clear();
+            this.decoder.close();
+        }
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Ite(this);
+    }
+
+    private static class Ite implements Iterator<String> {
+        public Ite(final PrefetchingLineDecoder self) {
+            this.self = self;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.self.nextLine != null) {
+                return true;
+            } else {
+                this.self.nextLine = this.self.poll();
+                return this.self.nextLine != null;
+            }
+        }
+
+        @Override
+        public String next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String l = this.self.nextLine;
+            this.self.nextLine = null;
+            return l;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private PrefetchingLineDecoder self;
+    }
+
+    private static final class Batch {
+        private Batch(final String[] lines, final int count, final Throwable failure) {
+            this.lines = lines;
+            this.count = count;
+            this.failure = failure;
+        }
+
+        static Batch of(final String[] lines, final int count) {
+            return new Batch(lines, count, null);
+        }
+
+        static Batch failure(final Throwable failure) {
+            return new Batch(null, 0, failure);
+        }
+
+        private final String[] lines;
+        private final int count;
+        private final Throwable failure;
+    }
+
+    /**
+     * Runs on the background thread to decode files into batches.
+     */
+    private void prefetch() {
+        try {
+            while (!this.finished && this.decoder.nextFile()) {
+                if (!this.put(FILE)) {
+                    return;
+                }
+                while (!this.finished) {
+                    final String[] lines = new String[this.batchSize];
+                    final int count = this.decoder.pollBatch(lines);
+                    if (count > 0 && !this.put(Batch.of(lines, count))) {
+                        return;
+                    }
+                    if (count < lines.length) {
+                        break;
+                    }
+                }
+            }
+            this.put(END);
+        } catch (final InterruptedException ex) {
+            // Stopped by close().
+        } catch (final Throwable ex) {
+            try {
+                this.put(Batch.failure(ex));
+            } catch (final InterruptedException ignored) {
+                // Stopped by close().
+            }
+        }
+    }
+
+    /**
+     * Puts a batch into the queue, waiting for space until {@link #close()} is called.
+     *
+     * <p>It does not rely only on the interrupt by {@link #close()}, since {@link org.embulk.spi.FileInput} may swallow it.
+     *
+     * @return {@code false} if {@link #close()} is called
+     */
+    private boolean put(final Batch batch) throws InterruptedException {
+        while (!this.finished) {
+            if (this.queue.offer(batch, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Batch take() {
+        final Batch batch;
+        if (this.peeked != null) {
+            batch = this.peeked;
+            if (batch != END && batch.failure == null) {
+                this.peeked = null;
+            }
+        } else {
+            try {
+                batch = this.queue.take();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for lines decoded.", ex);
+            }
+        }
+        if (batch.failure != null) {
+            // The failure is kept so that it is thrown again for the next call.
+            this.peeked = batch;
+            if (batch.failure instanceof RuntimeException) {
+                throw (RuntimeException) batch.failure;
+            }
+            if (batch.failure instanceof Error) {
+                throw (Error) batch.failure;
+            }
+            throw new IllegalStateException("Failed to decode lines.", batch.failure);
+        }
+        return batch;
+    }
+
+    private static final int DEFAULT_MAX_BATCHES = 16;
+    private static final int BATCH_SIZE = 1024;
+    private static final long PUT_TIMEOUT_MILLIS = 100;
+
+    private static final Batch FILE = Batch.of(new String[0], 0);
+    private static final Batch END = Batch.of(new String[0], 0);
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = runnable -> {
+        final Thread thread = new Thread(runnable, "embulk-util-text-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private Thread thread;
+    private Batch current;
+    private int currentIndex;
+    private Batch peeked;
+    private String nextLine;
+    private volatile boolean finished;
+
+    private final LineDecoder decoder;
+    private final int batchSize;
+    private final ThreadFactory threadFactory;
+    private final BlockingQueue<Batch> queue;
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+/**
+ * A bounded cache to share {@link String} instances of the same chars.
+ *
+ * <p>It is a set-associative cache. Each set has {@link #WAYS} entries, and an entry in a set is evicted by the CLOCK
+ * algorithm, which approximates LRU with a referenced bit for each entry. Strings longer than the max length are not
+ * cached so that a few long lines do not retain the heap.
+ *
+ * This class is not thread-safe.
+ */
+final class StringCache {
+    private StringCache(final int sets, final int maxLength) {
+        this.mask = sets - 1;
+        this.maxLength = maxLength;
+        this.values = new String[sets * WAYS];
+        this.hashes = new int[sets * WAYS];
+        this.referenced = new boolean[sets * WAYS];
+        this.hands = new byte[sets];
+    }
+
+    /**
+     * Creates a {@code StringCache} of at least {@code capacity} entries.
+     */
+    static StringCache of(final int capacity, final int maxLength) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must not exceed " + MAX_CAPACITY + ": " + capacity);
+        }
+        int sets = 1;
+        while (sets * WAYS < capacity) {
+            sets <<= 1;
+        }
+        return new StringCache(sets, maxLength);
+    }
+
+    /**
+     * Returns a {@link String} of the chars, shared with the previous calls of the same chars if it is still cached.
+     */
+    String get(final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (length > this.maxLength) {
+            return new String(chars, offset, length);
+        }
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int base = this.setOf(hash);
+        for (int i = base; i < base + WAYS; i++) {
+            final String value = this.values[i];
+            if (value != null && this.hashes[i] == hash && equals(value, chars, offset, length)) {
+                this.referenced[i] = true;
+                return value;
+            }
+        }
+        final String value = new String(chars, offset, length);
+        this.put(base, hash, value);
+        return value;
+    }
+
+    /**
+     * Returns a {@link String} of the chars in the {@link StringBuilder}, shared if it is still cached.
+     */
+    String get(final StringBuilder builder) {
+        final int length = builder.length();
+        if (length == 0) {
+            return "";
+        }
+        if (length > this.maxLength) {
+            return builder.toString();
+        }
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + builder.charAt(i);
+        }
+
+        final int base = this.setOf(hash);
+        for (int i = base; i < base + WAYS; i++) {
+            final String value = this.values[i];
+            if (value != null && this.hashes[i] == hash && value.contentEquals(builder)) {
+                this.referenced[i] = true;
+                return value;
+            }
+        }
+        final String value = builder.toString();
+        this.put(base, hash, value);
+        return value;
+    }
+
+    private int setOf(final int hash) {
+        // Spread higher bits as HashMap does, since a set is selected by lower bits.
+        return ((hash ^ (hash >>> 16)) & this.mask) * WAYS;
+    }
+
+    /**
+     * Puts a value into the set, evicting an entry not referenced since the hand passed it last.
+     */
+    private void put(final int base, final int hash, final String value) {
+        final int set = base / WAYS;
+        int hand = this.hands[set];
+        while (true) {
+            final int i = base + hand;
+            hand = (hand + 1) % WAYS;
+            if (this.values[i] == null || !this.referenced[i]) {
+                this.values[i] = value;
+                this.hashes[i] = hash;
+                this.referenced[i] = false;
+                this.hands[set] = (byte) hand;
+                return;
+            }
+            this.referenced[i] = false;
+        }
+    }
+
+    private static boolean equals(final String value, final char[] chars, final int offset, final int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final int WAYS = 4;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final int mask;
+    private final int maxLength;
+    private final String[] values;
+    private final int[] hashes;
+    private final boolean[] referenced;
+    private final byte[] hands;
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
+
+/**
+ * A {@link CharsetDecodingReader} specialized for UTF-8.
+ *
+ * <p>It validates and decodes well-formed UTF-8 by itself, checking 8 bytes at once for runs of ASCII. Only when it meets
+ * a malformed sequence, or the end of input, it falls back to the {@link java.nio.charset.CharsetDecoder} to apply its
+ * replacement policy.
+ *
+ * <p>Bytes in a direct buffer are decoded by the {@link java.nio.charset.CharsetDecoder} as they are.
+ *
+ * This class is not thread-safe.
+ */
+class Utf8DecodingReader extends CharsetDecodingReader {
+    Utf8DecodingReader(final InputStream inputStream, final CharsetDecoder decoder, final int bufferSize) {
+        super(inputStream, decoder, bufferSize);
+    }
+
+    Utf8DecodingReader(final InputStream inputStream, final CharsetDecoder decoder, final int bufferSize, final boolean directBuffer) {
+        super(inputStream, decoder, bufferSize, directBuffer);
+    }
+
+    @Override
+    int decode(final char[] cbuf, final int off, final int len) throws IOException {
+        final ByteBuffer bytes = this.bytes();
+        if (!bytes.hasArray()) {
+            return super.decode(cbuf, off, len);
+        }
+        while (!this.isEndOfInput()) {
+            final int decoded = this.decodeWellFormed(bytes, cbuf, off, len);
+            if (decoded > 0) {
+                return decoded;
+            }
+            if (bytes.hasRemaining() && !this.isIncomplete(bytes)) {
+                // A malformed sequence at the head is replaced by the CharsetDecoder.
+                break;
+            }
+            this.fillBytes();
+        }
+        return super.decode(cbuf, off, len);
+    }
+
+    /**
+     * Decodes well-formed UTF-8 sequences from the head of {@code bytes} as much as possible.
+     *
+     * <p>It stops at a malformed sequence, at a sequence incomplete in the buffer, or when {@code cbuf} is full.
+     */
+    private int decodeWellFormed(final ByteBuffer bytes, final char[] cbuf, final int off, final int len) {
+        final byte[] src = bytes.array();
+        final int srcOffset = bytes.arrayOffset();
+        final int srcLimit = srcOffset + bytes.limit();
+        final int dstLimit = off + len;
+
+        int sp = srcOffset + bytes.position();
+        int dp = off;
+
+        while (sp < srcLimit && dp < dstLimit) {
+            // Runs of ASCII are checked by 8 bytes: the OR of them is negative only if any of them has its highest bit.
+            while (sp + 8 <= srcLimit && dp + 8 <= dstLimit
+                    && (src[sp] | src[sp + 1] | src[sp + 2] | src[sp + 3]
+                            | src[sp + 4] | src[sp + 5] | src[sp + 6] | src[sp + 7]) >= 0) {
+                cbuf[dp] = (char) src[sp];
+                cbuf[dp + 1] = (char) src[sp + 1];
+                cbuf[dp + 2] = (char) src[sp + 2];
+                cbuf[dp + 3] = (char) src[sp + 3];
+                cbuf[dp + 4] = (char) src[sp + 4];
+                cbuf[dp + 5] = (char) src[sp + 5];
+                cbuf[dp + 6] = (char) src[sp + 6];
+                cbuf[dp + 7] = (char) src[sp + 7];
+                sp += 8;
+                dp += 8;
+            }
+            if (sp >= srcLimit || dp >= dstLimit) {
+                break;
+            }
+
+            final int b1 = src[sp];
+            if (b1 >= 0) {
+                cbuf[dp++] = (char) b1;
+                sp++;
+            } else if ((b1 >> 5) == -2 && (b1 & 0x1e) != 0) {
+                // 2 bytes: C2..DF
+                if (sp + 1 >= srcLimit) {
+                    break;
+                }
+                final int b2 = src[sp + 1];
+                if (!isContinuation(b2)) {
+                    break;
+                }
+                cbuf[dp++] = (char) (((b1 & 0x1f) << 6) | (b2 & 0x3f));
+                sp += 2;
+            } else if ((b1 >> 4) == -2) {
+                // 3 bytes: E0..EF
+                if (sp + 2 >= srcLimit) {
+                    break;
+                }
+                final int b2 = src[sp + 1];
+                final int b3 = src[sp + 2];
+                if (!isValidSecondOfThree(b1, b2) || !isContinuation(b3)) {
+                    break;
+                }
+                cbuf[dp++] = (char) (((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+                sp += 3;
+            } else if ((b1 >> 3) == -2) {
+                // 4 bytes: F0..F4, decoded into a surrogate pair
+                if (sp + 3 >= srcLimit || dp + 1 >= dstLimit) {
+                    break;
+                }
+                final int b2 = src[sp + 1];
+                final int b3 = src[sp + 2];
+                final int b4 = src[sp + 3];
+                if (!isValidSecondOfFour(b1, b2) || !isContinuation(b3) || !isContinuation(b4)) {
+                    break;
+                }
+                final int codePoint = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12) | ((b3 & 0x3f) << 6) | (b4 & 0x3f);
+                cbuf[dp++] = Character.highSurrogate(codePoint);
+                cbuf[dp++] = Character.lowSurrogate(codePoint);
+                sp += 4;
+            } else {
+                break;
+            }
+        }
+
+        bytes.position(sp - srcOffset);
+        return dp - off;
+    }
+
+    /**
+     * Returns {@code true} if the head of {@code bytes} is a well-formed prefix of a sequence which continues beyond the buffer.
+     */
+    private boolean isIncomplete(final ByteBuffer bytes) {
+        final int position = bytes.position();
+        final int remaining = bytes.remaining();
+        final int b1 = bytes.get(position);
+        final int length;
+        if ((b1 >> 5) == -2 && (b1 & 0x1e) != 0) {
+            length = 2;
+        } else if ((b1 >> 4) == -2) {
+            length = 3;
+        } else if ((b1 >> 3) == -2) {
+            length = 4;
+        } else {
+            return false;
+        }
+        if (remaining >= length) {
+            return false;
+        }
+        if (remaining >= 2) {
+            final int b2 = bytes.get(position + 1);
+            if (length == 3 && !isValidSecondOfThree(b1, b2)) {
+                return false;
+            }
+            if (length == 4 && !isValidSecondOfFour(b1, b2)) {
+                return false;
+            }
+            if (length == 2 && !isContinuation(b2)) {
+                return false;
+            }
+        }
+        if (remaining >= 3 && !isContinuation(bytes.get(position + 2))) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isContinuation(final int b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    private static boolean isValidSecondOfThree(final int b1, final int b2) {
+        switch (b1 & 0xff) {
+            case 0xe0:  // Not to be overlong
+                return (b2 & 0xe0) == 0xa0;
+            case 0xed:  // Not to be a surrogate
+                return (b2 & 0xe0) == 0x80;
+            default:
+                return isContinuation(b2);
+        }
+    }
+
+    private static boolean isValidSecondOfFour(final int b1, final int b2) {
+        switch (b1 & 0xff) {
+            case 0xf0:  // Not to be overlong
+                return (b2 & 0xff) >= 0x90 && (b2 & 0xff) <= 0xbf;
+            case 0xf1:
+            case 0xf2:
+            case 0xf3:
+                return isContinuation(b2);
+            case 0xf4:  // Not to exceed U+10FFFF
+                return (b2 & 0xf0) == 0x80;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Checks bytes allocated per line, and optionally throughput, of the hot paths against the baselines below.
+ *
+ * <p>Allocation is measured by {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} of the current
+ * thread, which is stable enough across machines. Throughput depends on the machine, and is checked only when the
+ * system property {@code org.embulk.util.text.checkThroughput} is {@code true}, such as by {@code ./gradlew test -PcheckThroughput}.
+ *
+ * <p>Update the baselines when a change intentionally allocates more, or when the reference machine changes.
+ */
+public class TestAllocationRegression {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Before
+    public void assumeAllocationMeasurable() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    @Test
+    public void testLineDecoderPoll() {
+        // A String for each line is inevitable. Its size depends on the JVM, such as compact strings, then it is measured.
+        final char[] chars = LINE.toCharArray();
+        final String[] sink = new String[1024];
+        final Measurement strings = measure(() -> {
+            for (int i = 0; i < LINES; i++) {
+                sink[i % sink.length] = new String(chars, 0, chars.length);
+            }
+        });
+
+        final byte[] source = sourceBytes();
+        final Measurement measurement = measure(() -> {
+            final LineDecoder decoder = LineDecoder.of(newInput(source), StandardCharsets.UTF_8, LineDelimiter.LF);
+            decoder.nextFile();
+            int count = 0;
+            while (decoder.poll() != null) {
+                count++;
+            }
+            decoder.close();
+            assertEquals(LINES + 1, count);  // With the last empty line after the trailing LF.
+        });
+        measurement.check("LineDecoder.poll()",
+                          strings.bytesPerLine + DECODER_POLL_MAX_OVERHEAD_BYTES_PER_LINE,
+                          DECODER_POLL_MIN_LINES_PER_SECOND);
+    }
+
+    @Test
+    public void testLineEncoderAddLine() {
+        final Measurement measurement = measure(() -> {
+            final LineEncoder encoder = LineEncoder.of(new DiscardingFileOutput(), Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+            encoder.nextFile();
+            for (int i = 0; i < LINES; i++) {
+                encoder.addLine(LINE);
+            }
+            encoder.finish();
+            encoder.close();
+        });
+        // Output Buffers may be allocated on heap by the allocator up to the bytes encoded, which are inevitable.
+        measurement.check("LineEncoder.addLine()",
+                          LINE.length() + 1 + ENCODER_ADD_LINE_MAX_OVERHEAD_BYTES_PER_LINE,
+                          ENCODER_ADD_LINE_MIN_LINES_PER_SECOND);
+    }
+
+    private static byte[] sourceBytes() {
+        final StringBuilder builder = new StringBuilder(LINES * (LINE.length() + 1));
+        for (int i = 0; i < LINES; i++) {
+            builder.append(LINE).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ListFileInput newInput(final byte[] source) {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < source.length; offset += INPUT_BUFFER_SIZE) {
+            buffers.add(BufferImpl.wrap(source, offset, Math.min(INPUT_BUFFER_SIZE, source.length - offset)));
+        }
+        return new ListFileInput(ImmutableList.of(buffers));
+    }
+
+    /**
+     * Runs the task after warming up, and keeps the least allocation and the shortest time of the runs.
+     */
+    private static Measurement measure(final Runnable task) {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        long leastBytes = Long.MAX_VALUE;
+        long leastNanos = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            final long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+            final long nanosBefore = System.nanoTime();
+            task.run();
+            leastNanos = Math.min(leastNanos, System.nanoTime() - nanosBefore);
+            leastBytes = Math.min(leastBytes, bean.getThreadAllocatedBytes(threadId) - bytesBefore);
+        }
+        return new Measurement((double) leastBytes / LINES, LINES * 1_000_000_000.0 / Math.max(leastNanos, 1));
+    }
+
+    private static class Measurement {
+        Measurement(final double bytesPerLine, final double linesPerSecond) {
+            this.bytesPerLine = bytesPerLine;
+            this.linesPerSecond = linesPerSecond;
+        }
+
+        void check(final String name, final double maxBytesPerLine, final double minLinesPerSecond) {
+            assertTrue(String.format("%s allocated %.1f bytes per line, more than %.1f.", name, this.bytesPerLine, maxBytesPerLine),
+                       this.bytesPerLine <= maxBytesPerLine);
+            if (Boolean.getBoolean(CHECK_THROUGHPUT_PROPERTY)) {
+                assertTrue(String.format("%s processed %.0f lines per second, less than %.0f.", name, this.linesPerSecond, minLinesPerSecond),
+                           this.linesPerSecond >= minLinesPerSecond);
+            }
+        }
+
+        private final double bytesPerLine;
+        private final double linesPerSecond;
+    }
+
+    /**
+     * Releases {@link org.embulk.spi.Buffer}s added so that only the encoder's own allocation is measured.
+     */
+    private static class DiscardingFileOutput implements FileOutput {
+        @Override
+        public void nextFile() {
+        }
+
+        @Override
+        public void add(final Buffer buffer) {
+            buffer.release();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final String CHECK_THROUGHPUT_PROPERTY = "org.embulk.util.text.checkThroughput";
+
+    private static final String LINE = "1234567890,abcdefghij,KLMNOPQRST";  // 32 ASCII chars
+    private static final int LINES = 100_000;
+    private static final int INPUT_BUFFER_SIZE = 32 * 1024;
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 5;
+
+    // Baselines from a run on OpenJDK 17.0.9, Linux x86_64, on 2026-10-19:
+    //
+    // - LineDecoder.poll(): 72.7 bytes/line with compact strings, where the String of a line is 72 bytes (24 + 16 + 32).
+    //   104.9 bytes/line with -XX:-CompactStrings, where the String is 104 bytes (24 + 16 + 64) as in Java 8.
+    //   8.1-8.5 M lines/s.
+    // - LineEncoder.addLine(): 33.9 bytes/line, where 33 bytes are of the output Buffers. 12.5-19.7 M lines/s.
+    //
+    // Both allocate less than 1 byte per line besides the inevitable ones, amortizing buffers created per run.
+    // The thresholds allow 8 bytes per line above that, and half of the throughput measured.
+    private static final double DECODER_POLL_MAX_OVERHEAD_BYTES_PER_LINE = 8.0;
+    private static final double DECODER_POLL_MIN_LINES_PER_SECOND = 4_000_000.0;
+
+    private static final double ENCODER_ADD_LINE_MAX_OVERHEAD_BYTES_PER_LINE = 8.0;
+    private static final double ENCODER_ADD_LINE_MIN_LINES_PER_SECOND = 6_000_000.0;
+}
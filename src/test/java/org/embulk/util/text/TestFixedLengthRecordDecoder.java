@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestFixedLengthRecordDecoder {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static List<String> doDecode(Charset charset, int recordLength, LineDelimiter trailingDelimiter, List<Buffer> buffers) {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        FixedLengthRecordDecoder decoder = FixedLengthRecordDecoder.of(
+                new ListFileInput(ImmutableList.of(buffers)), charset, recordLength, trailingDelimiter);
+        decoder.nextFile();
+        for (String record : decoder) {
+            builder.add(record);
+        }
+        return builder.build();
+    }
+
+    private static List<Buffer> bufferList(Charset charset, String... sources) {
+        List<Buffer> buffers = new ArrayList<Buffer>();
+        for (String source : sources) {
+            ByteBuffer buffer = charset.encode(source);
+            buffers.add(BufferImpl.wrap(buffer.array(), 0, buffer.limit()));
+        }
+        return buffers;
+    }
+
+    @Test
+    public void testDecodeWithoutDelimiter() throws Exception {
+        List<String> decoded = doDecode(
+                StandardCharsets.UTF_8, 5, null,
+                bufferList(StandardCharsets.UTF_8, "test1test2test3"));
+        assertEquals(ImmutableList.of("test1", "test2", "test3"), decoded);
+    }
+
+    @Test
+    public void testDecodeChunks() throws Exception {
+        List<String> decoded = doDecode(
+                StandardCharsets.UTF_8, 5, null,
+                bufferList(StandardCharsets.UTF_8, "te", "st1t", "e", "st2tes"));
+        assertEquals(ImmutableList.of("test1", "test2", "tes"), decoded);
+    }
+
+    @Test
+    public void testDecodeWithTrailingDelimiterInUtf16() throws Exception {
+        // The delimiter is matched without a byte order mark, which String#getBytes puts for UTF-16.
+        List<String> decoded = doDecode(
+                StandardCharsets.UTF_16, 4, LineDelimiter.LF,
+                bufferList(StandardCharsets.UTF_16BE, "ab\ncd", "\nef"));
+        assertEquals(ImmutableList.of("ab", "cd", "ef"), decoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeWithTrailingDelimiterCRLF() throws Exception {
+        List<String> decoded = doDecode(
+                StandardCharsets.UTF_8, 5, LineDelimiter.CRLF,
+                bufferList(StandardCharsets.UTF_8, "test1\r", "\ntest2test3\r\n"));
+        assertEquals(ImmutableList.of("test1", "test2", "test3"), decoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeMS932() throws Exception {
+        List<String> decoded = doDecode(
+                Charset.forName("ms932"), 6, LineDelimiter.LF,
+                bufferList(Charset.forName("ms932"), "てすと\nテスト\n"));
+        assertEquals(ImmutableList.of("てすと", "テスト"), decoded);
+    }
+
+    @Test
+    public void testDecodeMalformedWithReportingDecoder() throws Exception {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        final List<Buffer> buffers = ImmutableList.of(
+                BufferImpl.wrap(new byte[] { 'a', 'b', 'c', 'd', 'e', (byte) 0xFF, 'f', 'g' }, 0, 8));
+        final FixedLengthRecordDecoder recordDecoder = FixedLengthRecordDecoder.of(
+                new ListFileInput(ImmutableList.of(buffers)), decoder, 4, null);
+        recordDecoder.nextFile();
+        assertEquals("abcd", recordDecoder.poll());
+        try {
+            recordDecoder.poll();
+            fail("UncheckedIOException expected.");
+        } catch (final UncheckedIOException ex) {
+            assertTrue(ex.getCause() instanceof MalformedInputException);
+        }
+    }
+
+    @Test
+    public void testDecodeMoreCharsThanMaxCharsPerByte() throws Exception {
+        final List<Buffer> buffers = ImmutableList.of(BufferImpl.wrap(new byte[] { 'a', 'b', 'c', 'd', 'e' }, 0, 5));
+        final FixedLengthRecordDecoder decoder = FixedLengthRecordDecoder.of(
+                new ListFileInput(ImmutableList.of(buffers)), new DoublingCharset().newDecoder(), 3, null);
+        decoder.nextFile();
+        assertEquals("aabbcc", decoder.poll());
+        assertEquals("ddee", decoder.poll());
+        assertNull(decoder.poll());
+    }
+
+    /**
+     * Decodes each byte into the two chars, while its decoder declares only one char per byte at most.
+     */
+    private static class DoublingCharset extends Charset {
+        DoublingCharset() {
+            super("X-EMBULK-TEST-DOUBLING", null);
+        }
+
+        @Override
+        public boolean contains(final Charset cs) {
+            return cs instanceof DoublingCharset;
+        }
+
+        @Override
+        public CharsetDecoder newDecoder() {
+            return new CharsetDecoder(this, 1.0f, 1.0f) {
+                @Override
+                protected CoderResult decodeLoop(final ByteBuffer in, final CharBuffer out) {
+                    while (in.hasRemaining()) {
+                        if (out.remaining() < 2) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        final char c = (char) (in.get() & 0xFF);
+                        out.put(c).put(c);
+                    }
+                    return CoderResult.UNDERFLOW;
+                }
+            };
+        }
+
+        @Override
+        public CharsetEncoder newEncoder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package org.embulk.util.text;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
 import java.nio.ByteBuffer;
@@ -25,6 +27,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.BufferImpl;
@@ -152,6 +155,29 @@ public class TestLineDecoder {
         assertEquals(ImmutableList.of("て1", "す2", "と3"), decoded);
     }
 
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeChunksUTF8SurrogatePair() throws Exception {
+        final byte[] bytes = "a\uD83D\uDE00b\nc".getBytes(StandardCharsets.UTF_8);
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i++) {
+            buffers.add(BufferImpl.wrap(new byte[] { bytes[i] }, 0, 1));
+        }
+        List<String> decoded = doDecode(StandardCharsets.UTF_8, Newline.LF, buffers);
+        assertEquals(ImmutableList.of("a\uD83D\uDE00b", "c"), decoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testDecodeMalformedUTF8() throws Exception {
+        final byte[] bytes = new byte[] {
+            'a', (byte) 0xC0, (byte) 0xAF, 'b', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '\n', (byte) 0xE3, (byte) 0x81 };
+        List<String> decoded = doDecode(
+                StandardCharsets.UTF_8, Newline.LF,
+                ImmutableList.of(BufferImpl.wrap(bytes, 0, bytes.length)));
+        assertEquals(ImmutableList.of(new String(bytes, 0, 7, StandardCharsets.UTF_8), "\uFFFD"), decoded);
+    }
+
     @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
     @Test
     public void testDecodeBasicUTF16LE() throws Exception {
@@ -253,4 +279,220 @@ public class TestLineDecoder {
                 bufferList(StandardCharsets.UTF_8, "test1\r\ntest2\rtest3\ntest4"));
         assertEquals(ImmutableList.of("test1", "test2\rtest3\ntest4"), decoded);
     }
+
+    @Test
+    public void testDecodeWithCustomDelimiter() throws Exception {
+        final LineDecoder decoder = LineDecoder.ofCustomDelimiter(
+                new ListFileInput(ImmutableList.of(bufferList(Charset.forName("ms932"), "てす|~", "|と1\nテ|", "~|スト2"))),
+                Charset.forName("ms932"),
+                "|~|");
+        decoder.nextFile();
+        assertEquals("てす", decoder.poll());
+        assertEquals("と1\nテ", decoder.poll());
+        assertEquals("スト2", decoder.poll());
+        assertEquals(null, decoder.poll());
+    }
+
+    @Test
+    public void testPollBatch() throws Exception {
+        final LineDecoder decoder = newDecoder(
+                StandardCharsets.UTF_8, Newline.LF, bufferList(StandardCharsets.UTF_8, "test1\ntest2\n", "test3\ntest4\ntest5"));
+        decoder.nextFile();
+        final String[] dest = new String[4];
+        assertEquals(3, decoder.pollBatch(dest, 1, 3));
+        assertEquals(ImmutableList.of("test1", "test2", "test3"), ImmutableList.of(dest[1], dest[2], dest[3]));
+        assertEquals(ImmutableList.of("test4", "test5"), ImmutableList.of(decoder.pollBatch(3)));
+        assertEquals(0, decoder.pollBatch(3).length);
+        assertEquals(0, decoder.pollBatch(dest));
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line").append(i).append('\n');
+            expected.add("LINE" + i);
+        }
+        final LineDecoder decoder = newDecoder(
+                StandardCharsets.UTF_8, Newline.LF, bufferList(StandardCharsets.UTF_8, text.toString()));
+        decoder.nextFile();
+        final List<String> actual = decoder.lines().parallel().map(String::toUpperCase).collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testDecodeDirectBuffer() throws Exception {
+        final Charset shiftJis = Charset.forName("Shift_JIS");
+        for (final Charset charset : new Charset[] { StandardCharsets.UTF_8, shiftJis }) {
+            final LineDecoder decoder = LineDecoder.of(
+                    new ListFileInput(ImmutableList.of(
+                            bufferList(charset, "日本語\r\n", "テ", "スト\r\n末尾"),
+                            bufferList(charset, "abc\r\n"))),
+                    charset,
+                    LineDelimiter.CRLF,
+                    true);
+            final List<String> decoded = new ArrayList<>();
+            while (decoder.nextFile()) {
+                for (final String line : decoder) {
+                    decoded.add(line);
+                }
+            }
+            decoder.close();
+            assertEquals(ImmutableList.of("日本語", "テスト", "末尾", "abc", ""), decoded);
+        }
+    }
+
+    @Test
+    public void testDeduplicating() throws Exception {
+        final LineDecoder decoder = LineDecoder.builder(StandardCharsets.UTF_8)
+                .lineDelimiter(LineDelimiter.LF)
+                .stringCache(16)
+                .build(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "200 OK\n404 Not", " Found\n200 OK\n404 Not Found\n"))));
+        decoder.nextFile();
+        final String ok = decoder.poll();
+        final String notFound = decoder.poll();
+        assertEquals("200 OK", ok);
+        assertEquals("404 Not Found", notFound);
+        assertSame(ok, decoder.poll());
+        assertSame(notFound, decoder.poll());
+        assertEquals("", decoder.poll());
+        assertEquals(null, decoder.poll());
+    }
+
+    @Test
+    public void testFieldSeparated() throws Exception {
+        final LineDecoder decoder = LineDecoder.builder(StandardCharsets.UTF_8)
+                .lineDelimiter(LineDelimiter.LF)
+                .fieldSeparator('\t')
+                .build(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "日本\t語\n\t", "x\t\n"))));
+        decoder.nextFile();
+        assertEquals("日本\t語", decoder.poll());
+        assertEquals(2, decoder.getFieldCount());
+        assertEquals(2, decoder.getFieldEnds()[0]);
+        assertEquals(4, decoder.getFieldEnds()[1]);
+        assertEquals("\tx\t", decoder.poll());
+        assertEquals(3, decoder.getFieldCount());
+        assertEquals(0, decoder.getFieldEnds()[0]);
+        assertEquals(2, decoder.getFieldEnds()[1]);
+        assertEquals(3, decoder.getFieldEnds()[2]);
+        assertEquals("", decoder.poll());
+        assertEquals(1, decoder.getFieldCount());
+        assertEquals(0, decoder.getFieldEnds()[0]);
+        assertEquals(null, decoder.poll());
+    }
+
+    @Test
+    public void testBuilderCombined() throws Exception {
+        final LineDecoder.Builder builder = LineDecoder.builder(StandardCharsets.UTF_8)
+                .customDelimiter("|~|")
+                .fieldSeparator(',')
+                .stringCache(16)
+                .directBuffer(true);
+        final LineDecoder decoder = builder.build(
+                new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a,b|~", "|c|~|a,b"))));
+        decoder.nextFile();
+        final String first = decoder.poll();
+        assertEquals("a,b", first);
+        assertEquals(2, decoder.getFieldCount());
+        assertEquals(1, decoder.getFieldEnds()[0]);
+        assertEquals("c", decoder.poll());
+        assertEquals(1, decoder.getFieldCount());
+        assertSame(first, decoder.poll());
+        assertEquals(2, decoder.getFieldCount());
+        assertEquals(null, decoder.poll());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuilderBothDelimiters() throws Exception {
+        LineDecoder.builder(StandardCharsets.UTF_8)
+                .lineDelimiter(LineDelimiter.LF)
+                .customDelimiter("|")
+                .build(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a"))));
+    }
+
+    @Test
+    public void testPoolOfBuilder() throws Exception {
+        final LineDecoder.Builder builder = LineDecoder.builder(StandardCharsets.UTF_8).fieldSeparator('\t');
+        final LineDecoderPool pool = LineDecoderPool.of(builder);
+        builder.fieldSeparator(',');  // It does not affect the pool.
+
+        final LineDecoder decoder = pool.acquire(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a\tb,c"))));
+        decoder.nextFile();
+        assertEquals("a\tb,c", decoder.poll());
+        assertEquals(2, decoder.getFieldCount());
+        pool.release(decoder);
+
+        try {
+            pool.release(builder.build(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a")))));
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+        try {
+            pool.release(LineDecoder.of(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a"))), StandardCharsets.UTF_8, null));
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final LineDecoder decoder = LineDecoder.of(
+                new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "test1\nte"))),
+                StandardCharsets.UTF_8,
+                null);
+        decoder.nextFile();
+        assertEquals("test1", decoder.poll());
+
+        // "te" remains in the buffer, but it should be discarded.
+        decoder.reset(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "\uFEFFtest2\ntest3"))));
+        decoder.nextFile();
+        assertEquals("test2", decoder.poll());
+        assertEquals("test3", decoder.poll());
+        assertEquals(null, decoder.poll());
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        final LineDecoderPool pool = LineDecoderPool.of(StandardCharsets.UTF_8, LineDelimiter.LF);
+
+        final LineDecoder decoder1 = pool.acquire(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "test1\n"))));
+        decoder1.nextFile();
+        assertEquals("test1", decoder1.poll());
+        decoder1.close();
+        pool.release(decoder1);
+
+        final LineDecoder decoder2 = pool.acquire(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "test2\n"))));
+        assertSame(decoder1, decoder2);
+        decoder2.nextFile();
+        assertEquals("test2", decoder2.poll());
+    }
+
+    @Test
+    public void testPoolDirectBuffer() throws Exception {
+        final LineDecoderPool heapPool = LineDecoderPool.of(StandardCharsets.UTF_8, LineDelimiter.LF);
+        final LineDecoderPool directPool = LineDecoderPool.of(LineDecoder.builder(StandardCharsets.UTF_8).lineDelimiter(LineDelimiter.LF).directBuffer(true));
+
+        final LineDecoder decoder = directPool.acquire(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "test1\n"))));
+        decoder.nextFile();
+        assertEquals("test1", decoder.poll());
+        decoder.close();
+
+        try {
+            heapPool.release(decoder);
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+        try {
+            heapPool.release(LineDecoder.of(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a"))), StandardCharsets.UTF_8, LineDelimiter.LF, true));
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+        directPool.release(decoder);
+        assertSame(decoder, directPool.acquire(new ListFileInput(ImmutableList.of(bufferList(StandardCharsets.UTF_8, "test2\n")))));
+    }
 }
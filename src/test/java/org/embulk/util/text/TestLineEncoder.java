@@ -16,9 +16,18 @@
 
 package org.embulk.util.text;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
 import org.embulk.EmbulkTestRuntime;
 import org.embulk.spi.Buffer;
 import org.embulk.spi.Exec;
@@ -113,6 +122,224 @@ public class TestLineEncoder {
         }
     }
 
+    @Test
+    public void testReset() throws Exception {
+        final ByteArrayFileOutput output1 = new ByteArrayFileOutput();
+        final LineEncoder encoder = newEncoder(StandardCharsets.UTF_8, Newline.LF, output1);
+        encoder.nextFile();
+        encoder.addLine("abc");
+        encoder.finish();
+        encoder.close();
+        assertEquals("abc\n", output1.toString(StandardCharsets.UTF_8));
+
+        final ByteArrayFileOutput output2 = new ByteArrayFileOutput();
+        encoder.reset(output2);
+        encoder.nextFile();
+        encoder.addLine("日本語(Japanese)");
+        encoder.finish();
+        encoder.close();
+        assertEquals("日本語(Japanese)\n", output2.toString(StandardCharsets.UTF_8));
+        assertEquals("abc\n", output1.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPool() throws Exception {
+        final LineEncoderPool pool = LineEncoderPool.of(Newline.CRLF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+
+        final ByteArrayFileOutput output1 = new ByteArrayFileOutput();
+        final LineEncoder encoder1 = pool.acquire(output1);
+        encoder1.nextFile();
+        encoder1.addLine("abc");
+        encoder1.finish();
+        encoder1.close();
+        pool.release(encoder1);
+
+        final ByteArrayFileOutput output2 = new ByteArrayFileOutput();
+        final LineEncoder encoder2 = pool.acquire(output2);
+        assertSame(encoder1, encoder2);
+        encoder2.nextFile();
+        encoder2.addLine("def");
+        encoder2.finish();
+        encoder2.close();
+        assertEquals("abc\r\n", output1.toString(StandardCharsets.UTF_8));
+        assertEquals("def\r\n", output2.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPoolDirectBuffer() throws Exception {
+        final LineEncoderPool heapPool = LineEncoderPool.of(Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+        final LineEncoderPool directPool = LineEncoderPool.of(Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator(), 1, true);
+
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = directPool.acquire(output);
+        encoder.nextFile();
+        encoder.addLine("abc");
+        encoder.finish();
+        encoder.close();
+        assertEquals("abc\n", output.toString(StandardCharsets.UTF_8));
+
+        try {
+            heapPool.release(encoder);
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+        directPool.release(encoder);
+        assertSame(encoder, directPool.acquire(new ByteArrayFileOutput()));
+    }
+
+    @Test
+    public void testPoolRejectsChecksum() throws Exception {
+        final LineEncoderPool pool = LineEncoderPool.of(Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+        final LineEncoder encoder = LineEncoder.of(new ByteArrayFileOutput(), Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator(), CRC32::new);
+        try {
+            pool.release(encoder);
+            fail("IllegalArgumentException expected.");
+        } catch (final IllegalArgumentException ex) {
+            // Expected.
+        }
+        final LineEncoder acquired = pool.acquire(new ByteArrayFileOutput());
+        assertNotSame(encoder, acquired);
+        acquired.nextFile();
+        acquired.addLine("abc");
+        acquired.finish();
+        assertEquals(0, acquired.getFileStatistics().size());
+    }
+
+    @Test
+    public void testFileStatistics() throws Exception {
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = LineEncoder.of(output, Newline.CRLF, StandardCharsets.UTF_8, Exec.getBufferAllocator(), CRC32::new);
+        encoder.nextFile();
+        encoder.addLine("abc");
+        encoder.addLine("日本語(Japanese)");
+        encoder.nextFile();
+        encoder.addText("def");
+        encoder.finish();
+        encoder.close();
+
+        final List<EncodedFileStatistics> statistics = encoder.getFileStatistics();
+        assertEquals(2, statistics.size());
+        assertEquals(EncodedFileStatistics.of(0, 2, 26, crc32("abc\r\n日本語(Japanese)\r\n")), statistics.get(0));
+        assertEquals(EncodedFileStatistics.of(1, 1, 3, crc32("def")), statistics.get(1));
+    }
+
+    @Test
+    public void testFileStatisticsClosedWithoutFinish() throws Exception {
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = LineEncoder.of(output, Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator(), CRC32::new);
+        encoder.nextFile();
+        encoder.addLine("abc");
+        encoder.nextFile();
+        encoder.addLine("def");
+        encoder.close();
+
+        assertEquals("abc\ndef\n", output.toString(StandardCharsets.UTF_8));
+        assertEquals(
+                ImmutableList.of(
+                        EncodedFileStatistics.of(0, 1, 4, crc32("abc\n")),
+                        EncodedFileStatistics.of(1, 1, 4, crc32("def\n"))),
+                encoder.getFileStatistics());
+    }
+
+    @Test
+    public void testAddField() throws Exception {
+        final FieldFormat minimal = FieldFormat.of(',', '"', '"', FieldFormat.QuotePolicy.MINIMAL, "NULL");
+        final FieldFormat all = FieldFormat.of('\t', '\'', '\\', FieldFormat.QuotePolicy.ALL);
+        final FieldFormat none = FieldFormat.of('|', '"', '\\', FieldFormat.QuotePolicy.NONE);
+
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = LineEncoder.of(output, Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+        encoder.nextFile();
+        encoder.addField(minimal, "abc");
+        encoder.addField(minimal, "a,b");
+        encoder.addField(minimal, "say \"hi\"");
+        encoder.addField(minimal, null);
+        encoder.addField(minimal, "日本\n語");
+        encoder.addNewLine();
+        encoder.addField(all, "it's");
+        encoder.addField(all, "a\\b");
+        encoder.addNewLine();
+        encoder.addField(none, "a|b\\c\"d");
+        encoder.addField(none, "");
+        encoder.finish();
+        encoder.close();
+        assertEquals("abc,\"a,b\",\"say \"\"hi\"\"\",NULL,\"日本\n語\"\n"
+                + "'it\\'s'\t'a\\\\b'\n"
+                + "a\\|b\\\\c\"d|",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testAddFieldEmptyAndNull() throws Exception {
+        final FieldFormat minimal = FieldFormat.of(',', '"', '\\', FieldFormat.QuotePolicy.MINIMAL);
+        final FieldFormat none = FieldFormat.of('|', '"', '\\', FieldFormat.QuotePolicy.NONE, "\\N");
+
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = LineEncoder.of(output, Newline.LF, StandardCharsets.UTF_8, Exec.getBufferAllocator());
+        encoder.nextFile();
+        encoder.addField(minimal, "");
+        encoder.addField(minimal, null);
+        encoder.addField(minimal, "a\\b");
+        encoder.addNewLine();
+        encoder.addField(none, "a\nb\r\nc");
+        encoder.addField(none, null);
+        encoder.finish();
+        encoder.close();
+        assertEquals("\"\",,\"a\\\\b\"\n"
+                + "a\\\nb\\\r\\\nc|\\N",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        final ByteArrayFileOutput output = new ByteArrayFileOutput();
+        final LineEncoder encoder = LineEncoder.of(output, Newline.CRLF, StandardCharsets.UTF_8, Exec.getBufferAllocator(), CRC32::new, true);
+        encoder.nextFile();
+        encoder.addLine("abc");
+        encoder.addLine("日本語(Japanese)");
+        encoder.finish();
+        encoder.close();
+        assertEquals("abc\r\n日本語(Japanese)\r\n", output.toString(StandardCharsets.UTF_8));
+        assertEquals(
+                ImmutableList.of(EncodedFileStatistics.of(0, 2, 26, crc32("abc\r\n日本語(Japanese)\r\n"))),
+                encoder.getFileStatistics());
+    }
+
+    private static long crc32(final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        return crc32.getValue();
+    }
+
+    private static class ByteArrayFileOutput implements FileOutput {
+        @Override
+        public void nextFile() {
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void add(final Buffer buffer) {
+            this.bytes.write(buffer.array(), buffer.offset(), buffer.limit());
+            buffer.release();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String toString(final Charset charset) throws UnsupportedEncodingException {
+            return new String(this.bytes.toByteArray(), charset.name());
+        }
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    }
+
     @SuppressWarnings("deprecation")
     private String bufferToString(Buffer buffer, String charset)
             throws UnsupportedEncodingException {
@@ -98,6 +98,117 @@ public class TestLineReader {
         assertEquals(Collections.emptyList(), lines);
     }
 
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testReadLineWithDelimiterCRLFSplitAcrossBuffers() throws IOException {
+        for (int bufferSize = 1; bufferSize <= 3; bufferSize++) {
+            assertEquals(Arrays.asList("a", "bc", "d"), readLines("a\r\nbc\r\nd", LineDelimiter.CRLF, bufferSize));
+            assertEquals(Arrays.asList("a\r", "b"), readLines("a\r\r\nb", LineDelimiter.CRLF, bufferSize));
+        }
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testReadLineWithDelimiterCRFollowedByNonLFAcrossBuffers() throws IOException {
+        for (int bufferSize = 1; bufferSize <= 3; bufferSize++) {
+            assertEquals(Arrays.asList("ab", "c", "d"), readLines("ab\rc\rd", LineDelimiter.CR, bufferSize));
+            assertEquals(Arrays.asList("ab\rc", "d"), readLines("ab\rc\r\nd", LineDelimiter.CRLF, bufferSize));
+        }
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testReadLineWithCRBeforeEndOfInput() throws IOException {
+        for (int bufferSize = 1; bufferSize <= 3; bufferSize++) {
+            assertEquals(Arrays.asList("ab"), readLines("ab\r", null, bufferSize));
+            assertEquals(Arrays.asList("ab", ""), readLines("ab\r", LineDelimiter.CR, bufferSize));
+            assertEquals(Arrays.asList("ab\r"), readLines("ab\r", LineDelimiter.LF, bufferSize));
+            assertEquals(Arrays.asList("ab\r"), readLines("ab\r", LineDelimiter.CRLF, bufferSize));
+        }
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testReadLineWithDelimiterLFAfterCRAcrossBuffers() throws IOException {
+        for (int bufferSize = 1; bufferSize <= 3; bufferSize++) {
+            // An LF after CR is a part of CRLF, not a delimiter, also when CR ends a buffer.
+            assertEquals(Arrays.asList("ab\r\ncd", "e"), readLines("ab\r\ncd\ne", LineDelimiter.LF, bufferSize));
+            assertEquals(Arrays.asList("a\rb", "c"), readLines("a\rb\nc", LineDelimiter.LF, bufferSize));
+        }
+    }
+
+    @Test
+    public void testReadLineWithCustomDelimiter() throws IOException {
+        List<String> lines = readLinesWithCustomDelimiter("test1|~|test2|~test3||~|test4", "|~|", 256);
+        assertEquals(Arrays.asList("test1", "test2|~test3|", "test4"), lines);
+    }
+
+    @Test
+    public void testReadLineWithCustomDelimiterAndSmallBuffer() throws IOException {
+        List<String> lines = readLinesWithCustomDelimiter("test1|~|test2|~test3||~|test4", "|~|", 1);
+        assertEquals(Arrays.asList("test1", "test2|~test3|", "test4"), lines);
+    }
+
+    @Test
+    public void testReadLineWithCustomDelimiterSelfOverlapping() throws IOException {
+        List<String> lines = readLinesWithCustomDelimiter("aabaaabaab", "aab", 2);
+        assertEquals(Arrays.asList("", "a", "", ""), lines);
+    }
+
+    @Test
+    public void testReadLineWithCustomDelimiterRecordSeparator() throws IOException {
+        List<String> lines = readLinesWithCustomDelimiter("test1\u001Etest2\u001E", "\u001E", 256);
+        assertEquals(Arrays.asList("test1", "test2", ""), lines);
+    }
+
+    @Test
+    public void testReadFieldsWithoutDelimiter() throws IOException {
+        final LineReader reader = LineReader.of(new StringReader("a\tbc\t\r\n\tdef\r\tg"), null, 3);
+        reader.setFieldSeparator('\t');
+        assertEquals(Arrays.asList(Arrays.asList("a", "bc", ""), Arrays.asList("", "def"), Arrays.asList("", "g")), readFields(reader));
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testReadFieldsWithDelimiterCRLF() throws IOException {
+        final LineReader reader = LineReader.of(new StringReader("a,b\r,c\r\n,\r\n"), LineDelimiter.CRLF, 2);
+        reader.setFieldSeparator(',');
+        assertEquals(Arrays.asList(Arrays.asList("a", "b\r", "c"), Arrays.asList("", ""), Arrays.asList("")), readFields(reader));
+    }
+
+    @Test
+    public void testReadFieldsWithCustomDelimiter() throws IOException {
+        final LineReader reader = LineReader.ofCustomDelimiter(new StringReader("a|b||c|||d"), "||", 2);
+        reader.setFieldSeparator('|');
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c"), Arrays.asList("", "d")), readFields(reader));
+    }
+
+    private static List<List<String>> readFields(LineReader reader) throws IOException {
+        List<List<String>> result = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final int[] ends = reader.getFieldEnds();
+            final List<String> fields = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < reader.getFieldCount(); i++) {
+                fields.add(line.substring(start, ends[i]));
+                start = ends[i] + 1;
+            }
+            result.add(fields);
+        }
+        return result;
+    }
+
+    private static List<String> readLinesWithCustomDelimiter(String text, String customDelimiter, int bufferSize) throws IOException {
+        BufferedReader reader = LineReader.ofCustomDelimiter(new StringReader(text), customDelimiter, bufferSize);
+        List<String> result = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            result.add(line);
+        }
+        return result;
+    }
+
     private static List<String> readLines(String text, LineDelimiter lineDelimiter, int bufferSize) throws IOException {
         BufferedReader reader = LineReader.of(new StringReader(text), lineDelimiter, bufferSize);
         List<String> result = new ArrayList<>();
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.Exec;
+import org.embulk.spi.FileOutput;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestLineTranscoder {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static List<String> doTranscode(
+            Charset sourceCharset, LineDelimiter lineDelimiter, Charset targetCharset, Newline newline, List<List<Buffer>> files) {
+        final FilesOutput output = new FilesOutput();
+        try (LineTranscoder transcoder = LineTranscoder.of(
+                new ListFileInput(files), sourceCharset, lineDelimiter, output, targetCharset, newline, Exec.getBufferAllocator())) {
+            transcoder.transcode();
+        }
+        return output.toStrings(targetCharset);
+    }
+
+    private static List<Buffer> bufferList(Charset charset, String... sources) {
+        List<Buffer> buffers = new ArrayList<Buffer>();
+        for (String source : sources) {
+            ByteBuffer buffer = charset.encode(source);
+            buffers.add(BufferImpl.wrap(buffer.array(), 0, buffer.limit()));
+        }
+        return buffers;
+    }
+
+    @Test
+    public void testTranscodeCharset() throws Exception {
+        final Charset shiftJis = Charset.forName("Shift_JIS");
+        final List<String> transcoded = doTranscode(
+                shiftJis, LineDelimiter.CRLF, StandardCharsets.UTF_8, Newline.LF,
+                ImmutableList.of(
+                        bufferList(shiftJis, "日本語\r\n", "テスト\r", "\n末尾"),
+                        bufferList(shiftJis, "abc\r\ndef\r\n")));
+        assertEquals(ImmutableList.of("日本語\nテスト\n末尾", "abc\ndef\n"), transcoded);
+    }
+
+    @Test
+    public void testTranscodeUniversalNewline() throws Exception {
+        final List<String> transcoded = doTranscode(
+                StandardCharsets.UTF_8, null, StandardCharsets.UTF_8, Newline.CRLF,
+                ImmutableList.of(bufferList(StandardCharsets.UTF_8, "\uFEFFa\rb\nc\r", "\nd\r\r\ne")));
+        assertEquals(ImmutableList.of("a\r\nb\r\nc\r\nd\r\n\r\ne"), transcoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testTranscodeLineDelimiterLF() throws Exception {
+        final List<String> transcoded = doTranscode(
+                StandardCharsets.UTF_8, LineDelimiter.LF, StandardCharsets.UTF_8, Newline.CR,
+                ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a\nb\r", "\nc\n\n")));
+        assertEquals(ImmutableList.of("a\rb\r\nc\r\r"), transcoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testTranscodeLineDelimiterCR() throws Exception {
+        final List<String> transcoded = doTranscode(
+                StandardCharsets.UTF_8, LineDelimiter.CR, StandardCharsets.UTF_8, Newline.LF,
+                ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a\rb\r", "\nc\n\r\r")));
+        assertEquals(ImmutableList.of("a\nb\r\nc\n\n\n"), transcoded);
+    }
+
+    @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+    @Test
+    public void testTranscodeLineDelimiterCRLF() throws Exception {
+        final List<String> transcoded = doTranscode(
+                StandardCharsets.UTF_8, LineDelimiter.CRLF, StandardCharsets.UTF_8, Newline.LF,
+                ImmutableList.of(bufferList(StandardCharsets.UTF_8, "a\rb\r\r", "\nc\n\r")));
+        assertEquals(ImmutableList.of("a\rb\r\nc\n\r"), transcoded);
+    }
+
+    @Test
+    public void testTranscodeCustomDelimiter() throws Exception {
+        final FilesOutput output = new FilesOutput();
+        final ListFileInput input = new ListFileInput(ImmutableList.of(
+                bufferList(StandardCharsets.UTF_8, "a||b|", "|c|||d||", "|e|"),
+                bufferList(StandardCharsets.UTF_8, "f||")));
+        try (LineTranscoder transcoder = LineTranscoder.ofCustomDelimiter(
+                input, StandardCharsets.UTF_8, "||", output, StandardCharsets.UTF_8, Newline.LF, Exec.getBufferAllocator())) {
+            transcoder.transcode();
+        }
+        assertEquals(ImmutableList.of("a\nb\nc\n|d\n|e|", "f\n"), output.toStrings(StandardCharsets.UTF_8));
+    }
+
+    private static class FilesOutput implements FileOutput {
+        @Override
+        public void nextFile() {
+            this.files.add(new ByteArrayOutputStream());
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void add(final Buffer buffer) {
+            this.files.get(this.files.size() - 1).write(buffer.array(), buffer.offset(), buffer.limit());
+            buffer.release();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        List<String> toStrings(final Charset charset) {
+            final List<String> strings = new ArrayList<>();
+            for (final ByteArrayOutputStream file : this.files) {
+                strings.add(new String(file.toByteArray(), charset));
+            }
+            return strings;
+        }
+
+        private final List<ByteArrayOutputStream> files = new ArrayList<>();
+    }
+}
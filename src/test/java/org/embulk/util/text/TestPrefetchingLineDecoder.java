@@ -0,0 +1,239 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferImpl;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.ListFileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestPrefetchingLineDecoder {
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    private static List<Buffer> bufferList(final String... sources) {
+        final List<Buffer> buffers = new ArrayList<Buffer>();
+        for (final String source : sources) {
+            final ByteBuffer buffer = StandardCharsets.UTF_8.encode(source);
+            buffers.add(BufferImpl.wrap(buffer.array(), 0, buffer.limit()));
+        }
+        return buffers;
+    }
+
+    private static List<List<String>> decodeFiles(final PrefetchingLineDecoder decoder) {
+        final ImmutableList.Builder<List<String>> files = ImmutableList.builder();
+        while (decoder.nextFile()) {
+            final ImmutableList.Builder<String> lines = ImmutableList.builder();
+            for (final String line : decoder) {
+                lines.add(line);
+            }
+            files.add(lines.build());
+        }
+        return files.build();
+    }
+
+    @Test
+    public void testDecodeMultipleFiles() {
+        final ListFileInput input = new ListFileInput(ImmutableList.of(
+                bufferList("a\nb", "c\r\nd\n"),
+                bufferList(),
+                bufferList("e\rf")));
+        try (final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, StandardCharsets.UTF_8, null)) {
+            assertEquals(
+                    ImmutableList.of(
+                            ImmutableList.of("a", "bc", "d"),
+                            ImmutableList.of(),
+                            ImmutableList.of("e", "f")),
+                    decodeFiles(decoder));
+            assertFalse(decoder.nextFile());
+            assertNull(decoder.poll());
+        }
+    }
+
+    @Test
+    public void testDecodeManyLinesWithSmallQueue() {
+        final StringBuilder source = new StringBuilder();
+        final ImmutableList.Builder<String> expected = ImmutableList.builder();
+        for (int i = 0; i < 5000; i++) {
+            source.append(i).append('\n');
+            expected.add(Integer.toString(i));
+        }
+        expected.add("");  // A trailing delimiter yields an empty line with LineDelimiter.LF.
+        final ListFileInput input = new ListFileInput(ImmutableList.of(
+                bufferList(source.toString()),
+                bufferList(source.toString())));
+        try (final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(
+                input, StandardCharsets.UTF_8, LineDelimiter.LF, 1, Thread::new)) {
+            assertEquals(ImmutableList.of(expected.build(), expected.build()), decodeFiles(decoder));
+        }
+    }
+
+    @Test
+    public void testDecodeWithBuilder() {
+        final ListFileInput input = new ListFileInput(ImmutableList.of(
+                bufferList("a\nb<EOL>c<E", "OL>d\r\ne<EOL>"),
+                bufferList("f<EOL>f<EOL>")));
+        final LineDecoder.Builder builder = LineDecoder.builder(StandardCharsets.UTF_8).customDelimiter("<EOL>").stringCache(16);
+        try (final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, builder, 1, Thread::new)) {
+            builder.customDelimiter("\n");  // It does not affect the decoder already created.
+            assertEquals(
+                    ImmutableList.of(
+                            ImmutableList.of("a\nb", "c", "d\r\ne", ""),
+                            ImmutableList.of("f", "f", "")),
+                    decodeFiles(decoder));
+        }
+    }
+
+    @Test
+    public void testNextFileSkipsRemainingLines() {
+        final StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            source.append(i).append('\n');
+        }
+        final ListFileInput input = new ListFileInput(ImmutableList.of(
+                bufferList(source.toString()),
+                bufferList("x\ny")));
+        try (final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, StandardCharsets.UTF_8, null)) {
+            assertTrue(decoder.nextFile());
+            assertEquals("0", decoder.poll());
+            assertEquals("1", decoder.poll());
+            assertTrue(decoder.nextFile());
+            assertEquals("x", decoder.poll());
+            assertEquals("y", decoder.poll());
+            assertNull(decoder.poll());
+            assertFalse(decoder.nextFile());
+        }
+    }
+
+    @Test
+    public void testCloseWhilePrefetching() {
+        final StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            source.append(i).append('\n');
+        }
+        final ClosingFileInput input = new ClosingFileInput(new ListFileInput(ImmutableList.of(
+                bufferList(source.toString()),
+                bufferList(source.toString()))));
+        final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, StandardCharsets.UTF_8, null, 1, Thread::new);
+        assertTrue(decoder.nextFile());
+        assertEquals("0", decoder.poll());
+        decoder.close();  // It must not block while the background thread waits for the full queue.
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testCloseWhenFileInputSwallowsInterrupt() throws Exception {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            buffers.addAll(bufferList(i + "\n"));
+        }
+        final ClosingFileInput input = new ClosingFileInput(new ListFileInput(ImmutableList.of(buffers))) {
+                @Override
+                public Buffer poll() {
+                    try {
+                        Thread.sleep(2);
+                    } catch (final InterruptedException ex) {
+                        // Swallows the interrupt as a FileInput retrying a blocking read may do.
+                    }
+                    return super.poll();
+                }
+            };
+        final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, StandardCharsets.UTF_8, null, 1, Thread::new);
+        assertTrue(decoder.nextFile());
+        assertEquals("0", decoder.poll());
+
+        final Thread closing = new Thread(decoder::close);
+        closing.start();
+        closing.join(30000);
+        assertFalse("close() is blocked.", closing.isAlive());
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        final FileInput input = new FileInput() {
+                @Override
+                public boolean nextFile() {
+                    return true;
+                }
+
+                @Override
+                public Buffer poll() {
+                    throw new IllegalStateException("broken");
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        try (final PrefetchingLineDecoder decoder = PrefetchingLineDecoder.of(input, StandardCharsets.UTF_8, null)) {
+            try {
+                decoder.nextFile();
+                fail("IllegalStateException expected.");
+            } catch (final IllegalStateException ex) {
+                assertEquals("broken", ex.getMessage());
+            }
+            try {
+                decoder.poll();
+                fail("IllegalStateException expected.");
+            } catch (final IllegalStateException ex) {
+                assertEquals("broken", ex.getMessage());
+            }
+        }
+    }
+
+    private static class ClosingFileInput implements FileInput {
+        ClosingFileInput(final FileInput delegate) {
+            this.delegate = delegate;
+            this.closed = false;
+        }
+
+        @Override
+        public boolean nextFile() {
+            return this.delegate.nextFile();
+        }
+
+        @Override
+        public Buffer poll() {
+            return this.delegate.poll();
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+            this.delegate.close();
+        }
+
+        private boolean closed;
+
+        private final FileInput delegate;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestStringCache {
+    @Test
+    public void testGet() {
+        final StringCache cache = StringCache.of(16, 8);
+        final char[] chars = "xabcabcx".toCharArray();
+        final String abc = cache.get(chars, 1, 3);
+        assertEquals("abc", abc);
+        assertSame(abc, cache.get(chars, 4, 3));
+        assertSame(abc, cache.get(new StringBuilder("abc")));
+        assertEquals("bca", cache.get(chars, 2, 3));
+    }
+
+    @Test
+    public void testTooLong() {
+        final StringCache cache = StringCache.of(16, 2);
+        final char[] chars = "abc".toCharArray();
+        final String abc = cache.get(chars, 0, 3);
+        assertEquals("abc", abc);
+        assertNotSame(abc, cache.get(chars, 0, 3));
+    }
+
+    @Test
+    public void testEvictUnreferenced() {
+        // A single set of 4 entries
+        final StringCache cache = StringCache.of(1, 8);
+        final String a = cache.get("a".toCharArray(), 0, 1);
+        final String b = cache.get("b".toCharArray(), 0, 1);
+        cache.get("c".toCharArray(), 0, 1);
+        cache.get("d".toCharArray(), 0, 1);
+        assertSame(a, cache.get("a".toCharArray(), 0, 1));  // "a" is referenced.
+
+        // "b" is evicted as it is not referenced since it is put.
+        cache.get("e".toCharArray(), 0, 1);
+        assertSame(a, cache.get("a".toCharArray(), 0, 1));
+        assertNotSame(b, cache.get("b".toCharArray(), 0, 1));
+    }
+}